@@ -0,0 +1,305 @@
+package spinach;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A corpus that has been compiled into a binary file, so that it can be loaded
+ * much faster than by parsing the original text corpus.
+ * <p/>
+ * The compiled file contains a vocabulary table of all the strings in the corpus,
+ * followed by a packed block for each sentence (token columns as vocabulary ids,
+ * predicate flags and argument labels), and an index of where each block starts.
+ * When loaded, only the vocabulary and the index are read; each sentence is
+ * read and decoded the first time it is accessed.
+ * <p/>
+ * The compiled corpus keeps its file open until it is closed.
+ */
+public class CompiledCorpus extends AbstractList<SemanticFrameSet> implements RandomAccess, Closeable {
+
+    private static final int MAGIC = 0x53504e43;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final String[] vocabulary;
+    private final long[] sentenceOffsets;
+    private final AtomicReferenceArray<SemanticFrameSet> sentences;
+
+    private CompiledCorpus(String compiledLoc) throws IOException {
+        file = new RandomAccessFile(compiledLoc, "r");
+        channel = file.getChannel();
+
+        try {
+            ByteBuffer header = read(0, HEADER_SIZE);
+            if (header.getInt() != MAGIC)
+                throw new IOException(compiledLoc + " is not a compiled corpus");
+            if (header.getInt() != VERSION)
+                throw new IOException(compiledLoc + " was compiled with an unsupported version");
+
+            int numSentences = header.getInt();
+            long vocabularyOffset = header.getLong();
+            long indexOffset = header.getLong();
+
+            ByteBuffer vocabularyBlock = read(vocabularyOffset, (int) (indexOffset - vocabularyOffset));
+            vocabulary = new String[vocabularyBlock.getInt()];
+            byte[] bytes = new byte[64];
+            for (int i = 0; i < vocabulary.length; i++) {
+                int length = vocabularyBlock.getInt();
+                if (length > bytes.length)
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                vocabularyBlock.get(bytes, 0, length);
+                vocabulary[i] = new String(bytes, 0, length, CorpusReader.CORPUS_CHARSET);
+            }
+
+            ByteBuffer index = read(indexOffset, (numSentences + 1) * 8);
+            sentenceOffsets = new long[numSentences + 1];
+            for (int i = 0; i <= numSentences; i++)
+                sentenceOffsets[i] = index.getLong();
+
+            sentences = new AtomicReferenceArray<SemanticFrameSet>(numSentences);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a compiled corpus. Sentences are decoded as they are accessed.
+     *
+     * @param compiledLoc compiled corpus file location
+     * @return list of semantic framesets, one for each sentence in the corpus
+     * @throws IOException if the file is missing or is not a compiled corpus
+     */
+    static CompiledCorpus load(String compiledLoc) throws IOException {
+        return new CompiledCorpus(compiledLoc);
+    }
+
+    /**
+     * Returns the semantic frameset for some sentence in the corpus, decoding it if this
+     * is the first time it has been accessed.
+     *
+     * @param index index of the sentence in the corpus
+     * @return semantic frameset for that sentence
+     */
+    @Override
+    public SemanticFrameSet get(int index) {
+        SemanticFrameSet frameSet = sentences.get(index);
+        if (frameSet == null) {
+            try {
+                frameSet = decode(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (!sentences.compareAndSet(index, null, frameSet))
+                frameSet = sentences.get(index);
+        }
+        return frameSet;
+    }
+
+    @Override
+    public int size() {
+        return sentences.length();
+    }
+
+    /**
+     * Closes the compiled corpus file. Sentences that have not been accessed can no longer be decoded.
+     *
+     * @throws IOException if the file fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private SemanticFrameSet decode(int index) throws IOException {
+        long offset = sentenceOffsets[index];
+        ByteBuffer block = read(offset, (int) (sentenceOffsets[index + 1] - offset));
+        FrameSetBuilder builder = new FrameSetBuilder();
+
+        int numTokens = block.getInt();
+        for (int i = 0; i < numTokens; i++) {
+            Token token = new Token(
+                    vocabulary[block.getInt()],
+                    vocabulary[block.getInt()],
+                    vocabulary[block.getInt()],
+                    vocabulary[block.getInt()],
+                    block.getInt(),
+                    block.getInt()
+            );
+            builder.addToken(token, block.get() != 0);
+        }
+
+        int numArguments = block.getInt();
+        for (int i = 0; i < numArguments; i++)
+            builder.addArgument(block.getInt(), block.getInt(), vocabulary[block.getInt()]);
+
+        return builder.build();
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Compiled corpus is truncated");
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Compiles a syntactically annotated text corpus into a binary file that can be loaded
+     * with {@link #load(String)}. The text corpus is streamed, so it does not need to fit in memory.
+     *
+     * @param corpusLoc   text corpus file location
+     * @param compiledLoc location to write the compiled corpus to
+     * @throws IOException if the corpus is missing or improperly formatted, or the compiled corpus cannot be written
+     */
+    static void compile(String corpusLoc, String compiledLoc) throws IOException {
+        CorpusReader reader = new CorpusReader(corpusLoc);
+        RandomAccessFile out = new RandomAccessFile(compiledLoc, "rw");
+        try {
+            out.setLength(0);
+            new Compiler(out.getChannel()).compile(reader);
+        } finally {
+            reader.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the blocks of a compiled corpus.
+     */
+    private static class Compiler {
+
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+        private final Map<String, Integer> vocabularyIds = new HashMap<String, Integer>();
+        private final List<String> vocabulary = new ArrayList<String>();
+
+        private long[] sentenceOffsets = new long[1024];
+        private int numSentences;
+
+        Compiler(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void compile(CorpusReader reader) throws IOException {
+            channel.position(HEADER_SIZE);
+
+            SemanticFrameSet frameSet;
+            while ((frameSet = reader.readFrameSet()) != null) {
+                if (numSentences == sentenceOffsets.length)
+                    sentenceOffsets = Arrays.copyOf(sentenceOffsets, numSentences * 2);
+                sentenceOffsets[numSentences++] = channel.position();
+                writeSentence(frameSet);
+            }
+
+            long vocabularyOffset = channel.position();
+            writeVocabulary();
+
+            long indexOffset = channel.position();
+            for (int i = 0; i < numSentences; i++)
+                ensureRemaining(8).putLong(sentenceOffsets[i]);
+            ensureRemaining(8).putLong(vocabularyOffset);    //end of the last sentence
+            flush();
+
+            ensureRemaining(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(numSentences)
+                    .putLong(vocabularyOffset)
+                    .putLong(indexOffset);
+            channel.position(0);
+            flush();
+        }
+
+        private void writeSentence(SemanticFrameSet frameSet) throws IOException {
+            ensureRemaining(4).putInt(frameSet.size());
+            for (Token token : frameSet) {
+                ensureRemaining(4 * 6 + 1)
+                        .putInt(idOf(token.form))
+                        .putInt(idOf(token.lemma))
+                        .putInt(idOf(token.pos))
+                        .putInt(idOf(token.syntacticHeadRelation))
+                        .putInt(token.headSentenceIndex)
+                        .putInt(token.sentenceIndex)
+                        .put((byte) (frameSet.isPredicate(token) ? 1 : 0));
+            }
+
+            List<Token> predicates = frameSet.getPredicateList();
+            int numArguments = 0;
+            for (Token predicate : predicates)
+                numArguments += frameSet.numArgumentsOf(predicate);
+
+            ensureRemaining(4).putInt(numArguments);
+            for (int i = 0; i < predicates.size(); i++)
+                for (Map.Entry<Token, String> argument : frameSet.argumentsOf(predicates.get(i)).entrySet())
+                    ensureRemaining(4 * 3)
+                            .putInt(argument.getKey().sentenceIndex)
+                            .putInt(i)
+                            .putInt(idOf(argument.getValue()));
+
+            flush();
+        }
+
+        private void writeVocabulary() throws IOException {
+            ensureRemaining(4).putInt(vocabulary.size());
+            for (String s : vocabulary) {
+                byte[] bytes = s.getBytes(CorpusReader.CORPUS_CHARSET);
+                ensureRemaining(4 + bytes.length).putInt(bytes.length).put(bytes);
+            }
+            flush();
+        }
+
+        private int idOf(String s) {
+            Integer id = vocabularyIds.get(s);
+            if (id == null) {
+                id = vocabulary.size();
+                vocabularyIds.put(s, id);
+                vocabulary.add(s);
+            }
+            return id;
+        }
+
+        private ByteBuffer ensureRemaining(int length) throws IOException {
+            if (buffer.remaining() < length) {
+                flush();
+                if (buffer.capacity() < length)
+                    buffer = ByteBuffer.allocate(length);
+            }
+            return buffer;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Compiles a text corpus.
+     *
+     * @param args text corpus file location, followed by the location to write the compiled corpus to
+     * @throws IOException if the corpus cannot be compiled
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompiledCorpus <corpus> <compiled corpus>");
+            System.exit(1);
+        }
+        compile(args[0], args[1]);
+    }
+}
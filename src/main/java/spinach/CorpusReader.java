@@ -0,0 +1,292 @@
+package spinach;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static spinach.CorpusUtils.*;
+
+/**
+ * Reads a syntactically annotated text corpus one sentence at a time,
+ * so that only the sentence currently being read needs to be kept in memory.
+ * <p/>
+ * The line and field buffers are reused from sentence to sentence, and
+ * repeated strings (forms, lemmas, tags, labels) are shared between tokens.
+ * The underlying reader is closed once the end of the corpus is reached.
+ */
+public class CorpusReader implements Iterator<SemanticFrameSet>, Closeable {
+
+    static final Charset CORPUS_CHARSET = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_SHARED_STRINGS = 1 << 20;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int bufferPosition;
+    private int bufferEnd;
+
+    private char[] line = new char[256];
+    private int lineLength;
+    private int lineNumber;
+
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    private int numFields;
+
+    private String[] sharedStrings = new String[1 << 12];
+    private int numSharedStrings;
+
+    private final FrameSetBuilder builder = new FrameSetBuilder();
+
+    private SemanticFrameSet next;
+    private boolean finished;
+
+    /**
+     * Creates a corpus reader over some file.
+     *
+     * @param corpusLoc text corpus file location
+     * @throws IOException if the file cannot be opened
+     */
+    public CorpusReader(String corpusLoc) throws IOException {
+        this(new InputStreamReader(new FileInputStream(corpusLoc), CORPUS_CHARSET));
+    }
+
+    /**
+     * Creates a corpus reader over the text from some reader.
+     *
+     * @param in reader to read the corpus from
+     */
+    public CorpusReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next sentence of the corpus.
+     *
+     * @return semantic frameset for the next sentence, or null if the end of the corpus has been reached
+     * @throws IOException if the corpus cannot be read or is improperly formatted
+     */
+    public SemanticFrameSet readFrameSet() throws IOException {
+        if (next != null) {
+            SemanticFrameSet frameSet = next;
+            next = null;
+            return frameSet;
+        }
+        if (finished)
+            return null;
+
+        while (readLine()) {
+            if (splitLine() == 0) {    //sentence is over
+                if (!builder.isEmpty())
+                    return builder.build();
+            } else {    //is token in same sentence
+                addToken();
+            }
+        }
+
+        finished = true;
+        close();
+
+        if (!builder.isEmpty())    //corpus does not end with a blank line
+            return builder.build();
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readFrameSet();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public SemanticFrameSet next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        SemanticFrameSet frameSet = next;
+        next = null;
+        return frameSet;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException if the reader fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        in.close();
+    }
+
+    /*
+    Whether the end of the corpus has been reached, or the reader closed.
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    private void addToken() throws IOException {
+        if (numFields <= PREDICATE_COLUMN)
+            throw formatError("expected at least " + (PREDICATE_COLUMN + 1) + " columns, found " + numFields);
+
+        int sentenceIndex = intField(INDEX_COLUMN) - 1;   //corpus is 1-based, but code uses 0-base
+        Token token = new Token(
+                stringField(FORM_COLUMN),
+                stringField(LEMMA_COLUMN),
+                stringField(POS_COLUMN),
+                stringField(SEMANTIC_RELATION_COLUMN),
+                intField(PARENT_INDEX_COLUMN) - 1,
+                sentenceIndex
+        );
+
+        builder.addToken(token, !isEmptyField(PREDICATE_COLUMN));
+
+        for (int i = ARGS_START_COLUMN; i < numFields; i++)
+            if (!isEmptyField(i))
+                builder.addArgument(sentenceIndex, i - ARGS_START_COLUMN, stringField(i));
+    }
+
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        lineNumber++;
+        boolean readAnything = false;
+
+        while (true) {
+            if (bufferPosition == bufferEnd) {
+                bufferEnd = in.read(buffer);
+                bufferPosition = 0;
+                if (bufferEnd <= 0) {
+                    bufferEnd = 0;
+                    return readAnything;
+                }
+            }
+            readAnything = true;
+
+            char c = buffer[bufferPosition++];
+            if (c == '\n')
+                return true;
+
+            if (lineLength == line.length)
+                line = Arrays.copyOf(line, lineLength * 2);
+            line[lineLength++] = c;
+        }
+    }
+
+    /*
+    Splits the current line on whitespace, returning the number of fields.
+     */
+    private int splitLine() {
+        numFields = 0;
+        int i = 0;
+        while (true) {
+            while (i < lineLength && line[i] <= ' ')
+                i++;
+            if (i == lineLength)
+                return numFields;
+
+            if (numFields == fieldStarts.length) {
+                fieldStarts = Arrays.copyOf(fieldStarts, numFields * 2);
+                fieldEnds = Arrays.copyOf(fieldEnds, numFields * 2);
+            }
+            fieldStarts[numFields] = i;
+            while (i < lineLength && line[i] > ' ')
+                i++;
+            fieldEnds[numFields] = i;
+            numFields++;
+        }
+    }
+
+    private boolean isEmptyField(int field) {
+        return fieldEnds[field] - fieldStarts[field] == 1 && line[fieldStarts[field]] == '_';
+    }
+
+    private int intField(int field) throws IOException {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        boolean negative = line[start] == '-';
+        if (negative)
+            start++;
+        if (start == end)
+            throw formatError("expected a number in column " + (field + 1));
+
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9)
+                throw formatError("expected a number in column " + (field + 1));
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /*
+    Returns the contents of a field, sharing the string with previous fields having the same contents.
+     */
+    private String stringField(int field) {
+        int start = fieldStarts[field];
+        int length = fieldEnds[field] - start;
+
+        int hash = 0;
+        for (int i = start; i < start + length; i++)
+            hash = 31 * hash + line[i];
+
+        int mask = sharedStrings.length - 1;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        for (String s = sharedStrings[slot]; s != null; s = sharedStrings[slot]) {
+            if (s.hashCode() == hash && s.length() == length && regionMatches(s, start))
+                return s;
+            slot = (slot + 1) & mask;
+        }
+
+        String s = new String(line, start, length);
+        if (numSharedStrings < MAX_SHARED_STRINGS) {
+            sharedStrings[slot] = s;
+            if (++numSharedStrings * 2 > sharedStrings.length)
+                rehashSharedStrings();
+        }
+        return s;
+    }
+
+    private boolean regionMatches(String s, int start) {
+        for (int i = 0; i < s.length(); i++)
+            if (s.charAt(i) != line[start + i])
+                return false;
+        return true;
+    }
+
+    private void rehashSharedStrings() {
+        String[] oldStrings = sharedStrings;
+        sharedStrings = new String[oldStrings.length * 2];
+        int mask = sharedStrings.length - 1;
+        for (String s : oldStrings) {
+            if (s == null)
+                continue;
+            int hash = s.hashCode();
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (sharedStrings[slot] != null)
+                slot = (slot + 1) & mask;
+            sharedStrings[slot] = s;
+        }
+    }
+
+    private IOException formatError(String message) {
+        return new IOException("Line " + lineNumber + ": " + message);
+    }
+}
@@ -0,0 +1,75 @@
+package spinach;
+
+import spinach.sentence.SemanticFrameSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The semantic frames of a text corpus, read one sentence at a time rather than loaded into memory.
+ * <p/>
+ * Each iteration reads the corpus again from the beginning, and closes the file when it reaches
+ * the end of the corpus. An iteration that is stopped early leaves its file open until the stream
+ * is closed, so a stream that may not be read to the end should be closed once it is no longer used.
+ * Read errors during iteration are thrown as {@link UncheckedIOException}s.
+ *
+ * @see CorpusUtils#streamCorpus(String)
+ */
+public class CorpusStream implements Iterable<SemanticFrameSet>, Closeable {
+
+    private final String corpusLoc;
+    private final List<CorpusReader> openReaders = new ArrayList<CorpusReader>();
+
+    CorpusStream(String corpusLoc) {
+        this.corpusLoc = corpusLoc;
+    }
+
+    @Override
+    public Iterator<SemanticFrameSet> iterator() {
+        CorpusReader reader;
+        try {
+            reader = new CorpusReader(corpusLoc);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        synchronized (openReaders) {
+            for (Iterator<CorpusReader> it = openReaders.iterator(); it.hasNext(); )
+                if (it.next().isFinished())
+                    it.remove();
+            openReaders.add(reader);
+        }
+        return reader;
+    }
+
+    /**
+     * Closes the files of any iterations that have not reached the end of the corpus.
+     * The stream can still be iterated over afterwards.
+     *
+     * @throws IOException if a file fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        List<CorpusReader> readers;
+        synchronized (openReaders) {
+            readers = new ArrayList<CorpusReader>(openReaders);
+            openReaders.clear();
+        }
+
+        IOException failure = null;
+        for (CorpusReader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+}
@@ -1,14 +1,11 @@
 package spinach;
 
 import spinach.sentence.SemanticFrameSet;
-import spinach.sentence.Token;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * A class for various utilities that deal with text corpuses.
@@ -38,55 +35,86 @@ public class CorpusUtils {
         List<SemanticFrameSet> sentences =
                 new ArrayList<SemanticFrameSet>();
 
-        String strLine;
-        BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(corpusLoc)));
-
-        ArrayList<String[]> sentenceTokenData = new ArrayList<String[]>();
-
-        while ((strLine = br.readLine()) != null) {
-            if (strLine.equals("")) {    //sentence is over, enter sentence data into set
-
-                SemanticFrameSet goldFrames = new SemanticFrameSet();
-
-                for (String[] tokenData : sentenceTokenData) {   //add tokens into sentence; predicates into frames
-                    Token token = new Token(
-                            tokenData[FORM_COLUMN],
-                            tokenData[LEMMA_COLUMN],
-                            tokenData[POS_COLUMN],
-                            tokenData[SEMANTIC_RELATION_COLUMN],
-                            Integer.parseInt(tokenData[PARENT_INDEX_COLUMN]) - 1,
-                            Integer.parseInt(tokenData[INDEX_COLUMN]) - 1
-                    );      //subtract 1 from indices because corpus is 1-based, but code uses 0-base
-
-                    goldFrames.addToken(token);
+        CorpusReader reader = new CorpusReader(corpusLoc);
+        try {
+            SemanticFrameSet goldFrames;
+            while ((goldFrames = reader.readFrameSet()) != null)
+                sentences.add(goldFrames);
+        } finally {
+            reader.close();
+        }
 
-                    if (!tokenData[PREDICATE_COLUMN].equals("_"))   //is a predicate
-                        goldFrames.addPredicate(token);
-                }
+        return sentences;
 
-                List<Token> predicates = goldFrames.getPredicateList();
+    }
 
-                for (String[] tokenData : sentenceTokenData) {    //link arguments to predicates
-                    Token thisToken = goldFrames.tokenAt(Integer.parseInt(tokenData[INDEX_COLUMN]) - 1);
-                    for (int i = ARGS_START_COLUMN; i < tokenData.length; i++)
-                        if (!tokenData[i].equals("_")) {
-                            int predicateNum = i - ARGS_START_COLUMN;
-                            goldFrames.addArgument(predicates.get(predicateNum),
-                                    thisToken,
-                                    tokenData[i]);
-                        }
-                }
+    /**
+     * Given the location of a syntactically annotated text corpus, returns a list of semantic frames.
+     * The corpus is memory-mapped, split into chunks at sentence boundaries,
+     * and the chunks are parsed in parallel on the common fork-join pool.
+     *
+     * @param corpusLoc text corpus file location
+     * @return list of semantic framesets, one for each sentence in the corpus, in corpus order
+     * @throws IOException if file is missing or is improperly formatted
+     */
+    public static List<SemanticFrameSet> parseCorpusParallel(String corpusLoc) throws IOException {
+        return parseCorpusParallel(corpusLoc, ForkJoinPool.commonPool());
+    }
 
-                sentences.add(goldFrames);
+    /**
+     * Given the location of a syntactically annotated text corpus, returns a list of semantic frames.
+     * The corpus is memory-mapped, split into chunks at sentence boundaries,
+     * and the chunks are parsed in parallel on some fork-join pool.
+     *
+     * @param corpusLoc text corpus file location
+     * @param pool      pool to parse the corpus on
+     * @return list of semantic framesets, one for each sentence in the corpus, in corpus order
+     * @throws IOException if file is missing or is improperly formatted
+     */
+    public static List<SemanticFrameSet> parseCorpusParallel(String corpusLoc, ForkJoinPool pool)
+            throws IOException {
+        return MappedCorpusParser.parse(corpusLoc, pool);
+    }
 
-                sentenceTokenData.clear();
-            } else {   //is token in same sentence
-                sentenceTokenData.add(strLine.split("\\s+"));
-            }
-        }
+    /**
+     * Given the location of a syntactically annotated text corpus, returns the semantic frames
+     * of the corpus without loading the whole corpus into memory.
+     * <p/>
+     * Each iteration over the returned frames reads the corpus again from the beginning,
+     * one sentence at a time; the file is closed when the iteration reaches the end of the corpus.
+     * If an iteration may stop early, close the returned stream once done with it.
+     *
+     * @param corpusLoc text corpus file location
+     * @return semantic framesets, one for each sentence in the corpus
+     */
+    public static CorpusStream streamCorpus(String corpusLoc) {
+        return new CorpusStream(corpusLoc);
+    }
 
-        return sentences;
+    /**
+     * Compiles a syntactically annotated text corpus into a binary file, which can be
+     * loaded much faster than the text corpus with {@link #loadCompiledCorpus(String)}.
+     *
+     * @param corpusLoc   text corpus file location
+     * @param compiledLoc location to write the compiled corpus to
+     * @throws IOException if the corpus is missing or improperly formatted, or the compiled corpus cannot be written
+     */
+    public static void compileCorpus(String corpusLoc, String compiledLoc) throws IOException {
+        CompiledCorpus.compile(corpusLoc, compiledLoc);
+    }
 
+    /**
+     * Given the location of a compiled corpus, returns a list of semantic frames.
+     * Only the vocabulary and sentence index are read up front; each sentence is
+     * decoded the first time it is accessed. The returned corpus keeps the file open
+     * until it is closed.
+     *
+     * @param compiledLoc compiled corpus file location
+     * @return list of semantic framesets, one for each sentence in the corpus
+     * @throws IOException if file is missing or is not a compiled corpus
+     */
+    public static CompiledCorpus loadCompiledCorpus(String compiledLoc) throws IOException {
+        return CompiledCorpus.load(compiledLoc);
     }
 
 }
@@ -0,0 +1,196 @@
+package spinach;
+
+import spinach.sentence.RelationLabels;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+import static spinach.CorpusUtils.*;
+
+/**
+ * Writes semantic framesets out as a text corpus, one sentence at a time, in the same
+ * column format that is read by {@link CorpusReader}: the columns given by the
+ * constants in {@link CorpusUtils}, followed by one argument column for each predicate.
+ * <p/>
+ * Text is encoded straight into a reusable byte buffer, which is written to the
+ * underlying channel whenever it fills up, so no strings are created while writing.
+ * Writes are synchronized, so several threads may share a writer, although
+ * sentences are then written in whichever order they arrive.
+ */
+public class CorpusWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int NUM_COLUMNS = ARGS_START_COLUMN;
+
+    private final WritableByteChannel out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Creates a corpus writer that writes to some file, replacing its contents.
+     *
+     * @param corpusLoc location to write the text corpus to
+     * @throws IOException if the file cannot be opened
+     */
+    public CorpusWriter(String corpusLoc) throws IOException {
+        this(new FileOutputStream(corpusLoc).getChannel());
+    }
+
+    /**
+     * Creates a corpus writer that writes to some channel.
+     *
+     * @param out channel to write the corpus to
+     */
+    public CorpusWriter(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a sentence, with its predicates and arguments, followed by a blank line.
+     *
+     * @param frameSet frameset to write
+     * @throws IOException if the frameset cannot be written
+     */
+    public synchronized void write(SemanticFrameSet frameSet) throws IOException {
+        List<Token> predicates = frameSet.getPredicateList();
+
+        for (Token token : frameSet) {
+            for (int column = 0; column < NUM_COLUMNS; column++) {
+                if (column > 0)
+                    putByte('\t');
+                writeColumn(frameSet, token, column);
+            }
+
+            for (Token predicate : predicates) {
+                putByte('\t');
+                int relation = frameSet.relationIdAt(predicate.sentenceIndex, token.sentenceIndex);
+                if (relation == RelationLabels.NONE)
+                    putByte('_');
+                else
+                    putString(RelationLabels.labelOf(relation));
+            }
+
+            putByte('\n');
+        }
+
+        putByte('\n');
+    }
+
+    private void writeColumn(SemanticFrameSet frameSet, Token token, int column) throws IOException {
+        switch (column) {
+            case INDEX_COLUMN:
+                putInt(token.sentenceIndex + 1);    //corpus is 1-based, but code uses 0-base
+                break;
+            case FORM_COLUMN:
+                putString(token.form);
+                break;
+            case LEMMA_COLUMN:
+                putString(token.lemma);
+                break;
+            case POS_COLUMN:
+                putString(token.pos);
+                break;
+            case PARENT_INDEX_COLUMN:
+                putInt(token.headSentenceIndex + 1);
+                break;
+            case SEMANTIC_RELATION_COLUMN:
+                putString(token.syntacticHeadRelation);
+                break;
+            case PREDICATE_COLUMN:
+                if (!frameSet.isPredicate(token))
+                    putByte('_');
+                else if (token.lemma.isEmpty() || token.lemma.equals("_"))
+                    putByte('Y');    //a lone underscore would be read back as no predicate
+                else
+                    putString(token.lemma);
+                break;
+            default:    //the unused form, lemma and two tag columns repeat the columns that are read
+                writeColumn(frameSet, token, Math.min(column + FORM_COLUMN - 1, POS_COLUMN));
+        }
+    }
+
+    /**
+     * Writes any buffered text to the underlying channel.
+     *
+     * @throws IOException if the text cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes any buffered text, and closes the underlying channel.
+     *
+     * @throws IOException if the text cannot be written or the channel fails to close
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void putByte(int b) throws IOException {
+        if (!buffer.hasRemaining())
+            flush();
+        buffer.put((byte) b);
+    }
+
+    private void putInt(int value) throws IOException {
+        if (value < 0) {
+            putByte('-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            putByte('0' + value / divisor % 10);
+    }
+
+    /*
+    Encodes a string as UTF-8, without creating a byte array for it.
+     */
+    private void putString(String s) throws IOException {
+        int length = s.length();
+        int i = 0;
+        if (buffer.remaining() < length)
+            flush();
+        if (buffer.remaining() >= length)    //room for an ascii prefix without checking each byte
+            for (char c; i < length && (c = s.charAt(i)) < 0x80; i++)
+                buffer.put((byte) c);
+
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                putByte(c);
+            } else if (c < 0x800) {
+                putByte(0xc0 | (c >> 6));
+                putByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                putByte(0xf0 | (codePoint >> 18));
+                putByte(0x80 | ((codePoint >> 12) & 0x3f));
+                putByte(0x80 | ((codePoint >> 6) & 0x3f));
+                putByte(0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                putByte('?');    //unpaired surrogate, as the UTF-8 encoder would write it
+            } else {
+                putByte(0xe0 | (c >> 12));
+                putByte(0x80 | ((c >> 6) & 0x3f));
+                putByte(0x80 | (c & 0x3f));
+            }
+        }
+    }
+}
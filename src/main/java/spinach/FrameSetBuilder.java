@@ -0,0 +1,97 @@
+package spinach;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assembles SemanticFrameSets from the rows of a corpus, one sentence at a time.
+ * Arguments in a corpus refer to their predicate by column, and the predicates
+ * of a sentence are only all known once the sentence is over, so arguments are
+ * kept aside until the frameset is built.
+ * <p/>
+ * A single builder is reused for every sentence of a corpus.
+ */
+final class FrameSetBuilder {
+
+    private SemanticFrameSet frameSet = new SemanticFrameSet();
+    private int numTokens;
+
+    private int[] argumentIndices = new int[16];
+    private int[] predicateNumbers = new int[16];
+    private String[] argumentLabels = new String[16];
+    private int numArguments;
+
+    /**
+     * Adds a token to the current sentence.
+     *
+     * @param token       token to be added
+     * @param isPredicate whether or not the token is marked as a predicate
+     */
+    void addToken(Token token, boolean isPredicate) {
+        frameSet.addToken(token);
+        numTokens++;
+        if (isPredicate)
+            frameSet.addPredicate(token);
+    }
+
+    /**
+     * Adds an argument to the current sentence.
+     *
+     * @param argumentIndex   sentence index of the argument
+     * @param predicateNumber position of the predicate among the predicates of the sentence
+     * @param label           semantic relation between the predicate and the argument
+     */
+    void addArgument(int argumentIndex, int predicateNumber, String label) {
+        if (numArguments == argumentIndices.length) {
+            int newLength = numArguments * 2;
+            argumentIndices = Arrays.copyOf(argumentIndices, newLength);
+            predicateNumbers = Arrays.copyOf(predicateNumbers, newLength);
+            argumentLabels = Arrays.copyOf(argumentLabels, newLength);
+        }
+        argumentIndices[numArguments] = argumentIndex;
+        predicateNumbers[numArguments] = predicateNumber;
+        argumentLabels[numArguments] = label;
+        numArguments++;
+    }
+
+    /**
+     * Whether or not any tokens have been added since the last frameset was built.
+     *
+     * @return true if the current sentence is empty
+     */
+    boolean isEmpty() {
+        return numTokens == 0;
+    }
+
+    /**
+     * Finishes the current sentence, and starts a new one.
+     *
+     * @return frameset with all the tokens, predicates and arguments added since the last call
+     * @throws IOException if an argument refers to a predicate that does not exist
+     */
+    SemanticFrameSet build() throws IOException {
+        SemanticFrameSet goldFrames = frameSet;
+        List<Token> predicates = goldFrames.getPredicateList();
+
+        for (int i = 0; i < numArguments; i++) {
+            if (predicateNumbers[i] >= predicates.size())
+                throw new IOException("Argument column " + predicateNumbers[i] + " of token " +
+                        (argumentIndices[i] + 1) + " has no matching predicate");
+
+            goldFrames.addArgument(predicates.get(predicateNumbers[i]),
+                    goldFrames.tokenAt(argumentIndices[i]),
+                    argumentLabels[i]);
+            argumentLabels[i] = null;
+        }
+
+        frameSet = new SemanticFrameSet();
+        numTokens = 0;
+        numArguments = 0;
+
+        return goldFrames;
+    }
+}
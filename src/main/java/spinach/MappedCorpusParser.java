@@ -0,0 +1,368 @@
+package spinach;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static spinach.CorpusUtils.*;
+
+/**
+ * Parses a syntactically annotated text corpus in parallel.
+ * The corpus file is split into chunks at sentence boundaries (blank lines),
+ * each chunk is memory-mapped and parsed on a fork-join pool, and the
+ * sentences of all the chunks are returned in their original order.
+ */
+final class MappedCorpusParser {
+
+    private static final long MIN_CHUNK_SIZE = 1 << 18;
+    private static final long MAX_CHUNK_SIZE = 1 << 26;
+    private static final int CHUNKS_PER_THREAD = 8;
+    private static final int BOUNDARY_SCAN_SIZE = 1 << 16;
+
+    private MappedCorpusParser() {
+    }
+
+    /**
+     * Parses a corpus file.
+     *
+     * @param corpusLoc text corpus file location
+     * @param pool      pool to parse the chunks of the corpus on
+     * @return list of semantic framesets, one for each sentence in the corpus
+     * @throws IOException if file is missing or is improperly formatted
+     */
+    static List<SemanticFrameSet> parse(String corpusLoc, ForkJoinPool pool) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(corpusLoc, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            long[] boundaries = chunkBoundaries(channel, pool.getParallelism());
+
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            List<SemanticFrameSet>[] chunkSentences = new List[boundaries.length - 1];
+
+            try {
+                pool.invoke(new ParseTask(channel, boundaries, chunkSentences, 0, chunkSentences.length));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            int numSentences = 0;
+            for (List<SemanticFrameSet> sentences : chunkSentences)
+                numSentences += sentences.size();
+
+            List<SemanticFrameSet> sentences = new ArrayList<SemanticFrameSet>(numSentences);
+            for (List<SemanticFrameSet> chunk : chunkSentences)
+                sentences.addAll(chunk);
+            return sentences;
+        } finally {
+            file.close();
+        }
+    }
+
+    /*
+    Splits the file into chunks of roughly equal size, each of which starts at the beginning of a sentence.
+    Returns the start of each chunk, followed by the end of the file.
+     */
+    private static long[] chunkBoundaries(FileChannel channel, int parallelism) throws IOException {
+        long fileSize = channel.size();
+        long chunkSize = fileSize / Math.max(1, parallelism * CHUNKS_PER_THREAD);
+        chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, chunkSize));
+
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+
+        ByteBuffer window = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long position = chunkSize;
+        while (position < fileSize) {
+            long boundary = nextSentenceStart(channel, position, window);
+            if (boundary >= fileSize)
+                break;
+            boundaries.add(boundary);
+            position = boundary + chunkSize;
+        }
+        boundaries.add(fileSize);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = boundaries.get(i);
+        return result;
+    }
+
+    /*
+    Finds the position just after the first blank line that begins at or after some position.
+     */
+    private static long nextSentenceStart(FileChannel channel, long position, ByteBuffer window)
+            throws IOException {
+        boolean atLineStart = false;
+        boolean lineIsBlank = false;
+        long fileSize = channel.size();
+
+        while (position < fileSize) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0)
+                break;
+
+            for (int i = 0; i < read; i++) {
+                int b = window.get(i) & 0xff;
+                if (b == '\n') {
+                    if (atLineStart && lineIsBlank)
+                        return position + i + 1;
+                    atLineStart = true;
+                    lineIsBlank = true;
+                } else if (b > ' ') {
+                    lineIsBlank = false;
+                }
+            }
+            position += read;
+        }
+
+        return fileSize;
+    }
+
+    private static class ParseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] boundaries;
+        private final List<SemanticFrameSet>[] chunkSentences;
+        private final int firstChunk;
+        private final int endChunk;
+
+        ParseTask(FileChannel channel, long[] boundaries, List<SemanticFrameSet>[] chunkSentences,
+                  int firstChunk, int endChunk) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.chunkSentences = chunkSentences;
+            this.firstChunk = firstChunk;
+            this.endChunk = endChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (endChunk - firstChunk > 1) {
+                int middle = (firstChunk + endChunk) >>> 1;
+                invokeAll(new ParseTask(channel, boundaries, chunkSentences, firstChunk, middle),
+                        new ParseTask(channel, boundaries, chunkSentences, middle, endChunk));
+                return;
+            }
+
+            try {
+                long start = boundaries[firstChunk];
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        boundaries[firstChunk + 1] - start);
+                chunkSentences[firstChunk] = new ChunkParser(chunk, start).parse();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Parses the sentences of a single chunk, scanning fields by hand.
+     */
+    private static class ChunkParser {
+
+        private final ByteBuffer chunk;
+        private final long chunkStart;
+        private int lineStart;
+
+        private byte[] line = new byte[256];
+        private int lineLength;
+
+        private int[] fieldStarts = new int[16];
+        private int[] fieldEnds = new int[16];
+        private int numFields;
+
+        private String[] sharedStrings = new String[1 << 12];
+        private byte[][] sharedBytes = new byte[1 << 12][];
+        private int[] sharedHashes = new int[1 << 12];
+        private int numSharedStrings;
+
+        private final FrameSetBuilder builder = new FrameSetBuilder();
+
+        ChunkParser(ByteBuffer chunk, long chunkStart) {
+            this.chunk = chunk;
+            this.chunkStart = chunkStart;
+        }
+
+        List<SemanticFrameSet> parse() throws IOException {
+            List<SemanticFrameSet> sentences = new ArrayList<SemanticFrameSet>();
+
+            while (readLine()) {
+                if (splitLine() == 0) {    //sentence is over
+                    if (!builder.isEmpty())
+                        sentences.add(builder.build());
+                } else {    //is token in same sentence
+                    addToken();
+                }
+            }
+
+            if (!builder.isEmpty())
+                sentences.add(builder.build());
+
+            return sentences;
+        }
+
+        private boolean readLine() {
+            int start = chunk.position();
+            int limit = chunk.limit();
+            if (start == limit)
+                return false;
+
+            int end = start;
+            while (end < limit && chunk.get(end) != '\n')
+                end++;
+
+            lineStart = start;
+            lineLength = end - start;
+            if (lineLength > line.length)
+                line = new byte[Math.max(lineLength, line.length * 2)];
+            chunk.get(line, 0, lineLength);
+            if (end < limit)
+                chunk.get();    //skip newline
+
+            return true;
+        }
+
+        private int splitLine() {
+            numFields = 0;
+            int i = 0;
+            while (true) {
+                while (i < lineLength && (line[i] & 0xff) <= ' ')
+                    i++;
+                if (i == lineLength)
+                    return numFields;
+
+                if (numFields == fieldStarts.length) {
+                    fieldStarts = Arrays.copyOf(fieldStarts, numFields * 2);
+                    fieldEnds = Arrays.copyOf(fieldEnds, numFields * 2);
+                }
+                fieldStarts[numFields] = i;
+                while (i < lineLength && (line[i] & 0xff) > ' ')
+                    i++;
+                fieldEnds[numFields] = i;
+                numFields++;
+            }
+        }
+
+        private void addToken() throws IOException {
+            if (numFields <= PREDICATE_COLUMN)
+                throw formatError("expected at least " + (PREDICATE_COLUMN + 1) + " columns, found " + numFields);
+
+            int sentenceIndex = intField(INDEX_COLUMN) - 1;   //corpus is 1-based, but code uses 0-base
+            Token token = new Token(
+                    stringField(FORM_COLUMN),
+                    stringField(LEMMA_COLUMN),
+                    stringField(POS_COLUMN),
+                    stringField(SEMANTIC_RELATION_COLUMN),
+                    intField(PARENT_INDEX_COLUMN) - 1,
+                    sentenceIndex
+            );
+
+            builder.addToken(token, !isEmptyField(PREDICATE_COLUMN));
+
+            for (int i = ARGS_START_COLUMN; i < numFields; i++)
+                if (!isEmptyField(i))
+                    builder.addArgument(sentenceIndex, i - ARGS_START_COLUMN, stringField(i));
+        }
+
+        private boolean isEmptyField(int field) {
+            return fieldEnds[field] - fieldStarts[field] == 1 && line[fieldStarts[field]] == '_';
+        }
+
+        private int intField(int field) throws IOException {
+            int start = fieldStarts[field];
+            int end = fieldEnds[field];
+            boolean negative = line[start] == '-';
+            if (negative)
+                start++;
+            if (start == end)
+                throw formatError("expected a number in column " + (field + 1));
+
+            int value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = line[i] - '0';
+                if (digit < 0 || digit > 9)
+                    throw formatError("expected a number in column " + (field + 1));
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+
+        /*
+        Returns the contents of a field, sharing the string with previous fields having the same bytes.
+        The table keeps a copy of the bytes of each string, to compare against.
+         */
+        private String stringField(int field) {
+            int start = fieldStarts[field];
+            int length = fieldEnds[field] - start;
+
+            int hash = 0;
+            for (int i = start; i < start + length; i++)
+                hash = 31 * hash + line[i];
+
+            int mask = sharedStrings.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            for (String s = sharedStrings[slot]; s != null; s = sharedStrings[slot]) {
+                if (sharedHashes[slot] == hash && bytesMatch(sharedBytes[slot], start, length))
+                    return s;
+                slot = (slot + 1) & mask;
+            }
+
+            String s = new String(line, start, length, CorpusReader.CORPUS_CHARSET);
+            sharedStrings[slot] = s;
+            sharedBytes[slot] = Arrays.copyOfRange(line, start, start + length);
+            sharedHashes[slot] = hash;
+            if (++numSharedStrings * 2 > sharedStrings.length)
+                rehashSharedStrings();
+            return s;
+        }
+
+        private boolean bytesMatch(byte[] bytes, int start, int length) {
+            if (bytes.length != length)
+                return false;
+            for (int i = 0; i < length; i++)
+                if (bytes[i] != line[start + i])
+                    return false;
+            return true;
+        }
+
+        private void rehashSharedStrings() {
+            String[] oldStrings = sharedStrings;
+            byte[][] oldBytes = sharedBytes;
+            int[] oldHashes = sharedHashes;
+
+            sharedStrings = new String[oldStrings.length * 2];
+            sharedBytes = new byte[oldStrings.length * 2][];
+            sharedHashes = new int[oldStrings.length * 2];
+
+            int mask = sharedStrings.length - 1;
+            for (int i = 0; i < oldStrings.length; i++) {
+                if (oldStrings[i] == null)
+                    continue;
+                int slot = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                while (sharedStrings[slot] != null)
+                    slot = (slot + 1) & mask;
+                sharedStrings[slot] = oldStrings[i];
+                sharedBytes[slot] = oldBytes[i];
+                sharedHashes[slot] = oldHashes[i];
+            }
+        }
+
+        private IOException formatError(String message) {
+            return new IOException("Byte offset " + (chunkStart + lineStart) + ": " + message);
+        }
+    }
+}
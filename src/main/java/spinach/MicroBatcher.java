@@ -0,0 +1,136 @@
+package spinach;
+
+import spinach.classify.SemanticClassifier;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.TokenSentence;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Collects sentences submitted by many threads into batches, and parses each batch
+ * with {@link SemanticClassifier#parseAll}. A batch is parsed once it is full, or once
+ * a short window has passed since its first sentence arrived, whichever is sooner.
+ * <p/>
+ * Sentences wait in a bounded queue; once it is full, submitting blocks until there is room,
+ * which slows down the submitting threads instead of letting the queue grow without limit.
+ */
+final class MicroBatcher implements Closeable {
+
+    private final SemanticClassifier classifier;
+    private final ForkJoinPool pool;
+    private final int maxBatchSize;
+    private final long windowNanos;
+
+    private final BlockingQueue<Request> queue;
+    private final Thread batchThread;
+    private volatile boolean closed;
+
+    private static class Request {
+        final TokenSentence sentence;
+        final CompletableFuture<SemanticFrameSet> result = new CompletableFuture<SemanticFrameSet>();
+
+        Request(TokenSentence sentence) {
+            this.sentence = sentence;
+        }
+    }
+
+    /**
+     * Creates a micro-batcher, and starts its batching thread.
+     *
+     * @param classifier    trained classifier to parse sentences with
+     * @param pool          pool to parse batches on
+     * @param maxBatchSize  largest number of sentences to parse at once
+     * @param windowMillis  longest time to wait for a batch to fill up
+     * @param queueCapacity number of sentences that can wait to be batched
+     */
+    MicroBatcher(SemanticClassifier classifier, ForkJoinPool pool, int maxBatchSize, long windowMillis,
+                 int queueCapacity) {
+        this.classifier = classifier;
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.queue = new ArrayBlockingQueue<Request>(queueCapacity);
+
+        batchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                batchLoop();
+            }
+        }, "micro-batcher");
+        batchThread.setDaemon(true);
+        batchThread.start();
+    }
+
+    /**
+     * Submits a sentence to be parsed with the next batch, waiting for room in the queue if it is full.
+     *
+     * @param sentence sentence to parse
+     * @return future holding the parsed sentence
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    Future<SemanticFrameSet> submit(TokenSentence sentence) throws InterruptedException {
+        if (closed)
+            throw new RejectedExecutionException("Batcher is closed");
+        Request request = new Request(sentence);
+        queue.put(request);
+        return request.result;
+    }
+
+    /**
+     * Stops batching. Sentences that have not been parsed yet fail with a cancellation.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        batchThread.interrupt();
+    }
+
+    private void batchLoop() {
+        List<Request> batch = new ArrayList<Request>(maxBatchSize);
+        List<TokenSentence> sentences = new ArrayList<TokenSentence>(maxBatchSize);
+
+        try {
+            while (!closed) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    Request request = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (request == null)
+                        break;
+                    batch.add(request);
+                }
+
+                for (Request request : batch)
+                    sentences.add(request.sentence);
+                parseBatch(batch, sentences);
+
+                batch.clear();
+                sentences.clear();
+            }
+        } catch (InterruptedException e) {
+            //batcher was closed
+        }
+
+        for (Request request : batch)
+            request.result.cancel(false);
+        for (Request request; (request = queue.poll()) != null; )
+            request.result.cancel(false);
+    }
+
+    private void parseBatch(List<Request> batch, List<TokenSentence> sentences) {
+        List<SemanticFrameSet> parsed;
+        try {
+            parsed = classifier.parseAll(sentences, pool);
+        } catch (Throwable t) {
+            for (Request request : batch)
+                request.result.completeExceptionally(t);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++)
+            batch.get(i).result.complete(parsed.get(i));
+    }
+}
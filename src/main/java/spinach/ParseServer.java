@@ -0,0 +1,268 @@
+package spinach;
+
+import spinach.argumentclassifier.ArgumentClassifier;
+import spinach.classify.SemanticClassifier;
+import spinach.classify.StructuredClassifier;
+import spinach.predicateclassifier.PredicateClassifier;
+import spinach.sentence.SemanticFrameSet;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+/**
+ * A server that keeps a trained classifier loaded, and parses sentences sent to it
+ * over local TCP connections.
+ * <p/>
+ * Clients send sentences in the same text format as a corpus (see {@link CorpusReader}),
+ * each followed by a blank line, and receive each parsed sentence back in the same format
+ * (see {@link CorpusWriter}), in the order they were sent. Sentences from all the connections
+ * are parsed together in small batches (see {@link SemanticClassifier#parseAll}).
+ * <p/>
+ * Each connection is handled by its own threads, and each connection may only have a
+ * limited number of sentences waiting to be sent back; a client that sends faster than
+ * it reads stops being read from until it catches up.
+ */
+public class ParseServer implements Closeable {
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    private static final long DEFAULT_BATCH_WINDOW_MILLIS = 5;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final int port;
+    private final int queueCapacity;
+
+    private final MicroBatcher batcher;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "parse-server-connection");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    /**
+     * Creates a parse server.
+     *
+     * @param classifier        trained classifier to parse sentences with
+     * @param port              port to listen on, or 0 for any free port
+     * @param maxBatchSize      largest number of sentences to parse at once
+     * @param batchWindowMillis longest time to wait for more sentences before parsing a batch
+     * @param queueCapacity     number of sentences that can wait to be parsed, and to be sent back on each connection
+     */
+    public ParseServer(SemanticClassifier classifier, int port, int maxBatchSize, long batchWindowMillis,
+                       int queueCapacity) {
+        this.port = port;
+        this.queueCapacity = queueCapacity;
+        batcher = new MicroBatcher(classifier, ForkJoinPool.commonPool(), maxBatchSize, batchWindowMillis,
+                queueCapacity);
+    }
+
+    /**
+     * Creates a parse server with default batching settings.
+     *
+     * @param classifier trained classifier to parse sentences with
+     * @param port       port to listen on, or 0 for any free port
+     */
+    public ParseServer(SemanticClassifier classifier, int port) {
+        this(classifier, port, DEFAULT_MAX_BATCH_SIZE, DEFAULT_BATCH_WINDOW_MILLIS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Starts listening for connections on the loopback interface.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "parse-server-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Returns the port this server is listening on.
+     *
+     * @return local port, once started
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections, and stops parsing.
+     *
+     * @throws IOException if the server socket fails to close
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        batcher.close();
+        connectionExecutor.shutdownNow();
+        if (serverSocket != null)
+            serverSocket.close();
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connectionExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handleConnection(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!closed)
+                    System.err.println("Failed to accept connection: " + e.getMessage());
+            } catch (RejectedExecutionException e) {
+                return;    //server was closed
+            }
+        }
+    }
+
+    /*
+    Reads sentences from a connection and submits them to be parsed on this thread,
+    while another thread writes back the results in order.
+     */
+    private void handleConnection(final Socket socket) {
+        final BlockingQueue<Future<SemanticFrameSet>> pending =
+                new ArrayBlockingQueue<Future<SemanticFrameSet>>(queueCapacity);
+        final Future<SemanticFrameSet> endOfInput = new CompletableFuture<SemanticFrameSet>();
+
+        Future<?> writer;
+        try {
+            writer = connectionExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    writeResults(socket, pending, endOfInput);
+                    return null;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            closeQuietly(socket);
+            return;
+        }
+
+        try {
+            CorpusReader reader = new CorpusReader(new InputStreamReader(
+                    new ConnectionInputStream(socket), CorpusReader.CORPUS_CHARSET));
+            try {
+                SemanticFrameSet sentence;
+                while ((sentence = reader.readFrameSet()) != null)
+                    enqueue(pending, batcher.submit(sentence), writer);
+                enqueue(pending, endOfInput, writer);
+            } finally {
+                reader.close();
+            }
+
+            writer.get();
+        } catch (InterruptedException e) {
+            writer.cancel(true);
+        } catch (Exception e) {
+            if (!closed && !(e instanceof SocketException))
+                System.err.println("Connection failed: " + e.getMessage());
+            writer.cancel(true);
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /*
+    Waits for room to add a result to be written back, unless the writer has stopped.
+     */
+    private static void enqueue(BlockingQueue<Future<SemanticFrameSet>> pending, Future<SemanticFrameSet> result,
+                                Future<?> writer) throws InterruptedException, ExecutionException {
+        while (!pending.offer(result, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                writer.get();    //rethrows whatever stopped the writer
+                throw new CancellationException("Connection writer stopped");
+            }
+        }
+    }
+
+    private static void writeResults(Socket socket, BlockingQueue<Future<SemanticFrameSet>> pending,
+                                     Future<SemanticFrameSet> endOfInput) throws Exception {
+        CorpusWriter writer = new CorpusWriter(Channels.newChannel(socket.getOutputStream()));
+        try {
+            for (Future<SemanticFrameSet> result = pending.take(); result != endOfInput; result = pending.take()) {
+                writer.write(result.get());
+                if (pending.isEmpty())
+                    writer.flush();
+            }
+        } finally {
+            writer.flush();
+            socket.shutdownOutput();
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            //already closed
+        }
+    }
+
+    /*
+    The input stream of a connection, which only shuts down input when closed,
+    so that results can still be written back once a client has finished sending.
+     */
+    private static class ConnectionInputStream extends FilterInputStream {
+        private final Socket socket;
+
+        ConnectionInputStream(Socket socket) throws IOException {
+            super(socket.getInputStream());
+            this.socket = socket;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!socket.isClosed() && !socket.isInputShutdown())
+                socket.shutdownInput();
+        }
+    }
+
+    /**
+     * Loads a predicate classifier and an argument classifier, and serves until killed.
+     *
+     * @param args predicate classifier file, argument classifier file, and optionally the port to listen on
+     * @throws IOException            if the classifiers cannot be loaded or the port cannot be bound
+     * @throws ClassNotFoundException if the classifier files do not hold classifiers
+     * @throws InterruptedException   if interrupted while serving
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ParseServer <predicate classifier> <argument classifier> [port]");
+            System.exit(1);
+        }
+
+        PredicateClassifier predicateClassifier = PredicateClassifier.importClassifier(args[0]);
+        ArgumentClassifier argumentClassifier = ArgumentClassifier.importClassifier(args[1]);
+        SemanticClassifier classifier = new StructuredClassifier(argumentClassifier, predicateClassifier,
+                new ArrayList<SemanticFrameSet>());
+
+        ParseServer server = new ParseServer(classifier, args.length > 2 ? Integer.parseInt(args[2]) : 0);
+        server.start();
+        System.err.println("Listening on port " + server.getPort());
+
+        Thread.currentThread().join();
+    }
+}
@@ -0,0 +1,123 @@
+package spinach;
+
+import spinach.argumentclassifier.ArgumentClassifier;
+import spinach.classify.PipelinedParser;
+import spinach.classify.SemanticClassifier;
+import spinach.classify.StructuredClassifier;
+import spinach.predicateclassifier.PredicateClassifier;
+import spinach.sentence.SemanticFrameSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Tags the predicates and arguments of every sentence of a corpus file, using all the
+ * available processors, and writes the tagged sentences to another file in the same order.
+ * <p/>
+ * The input is read and the output written one sentence at a time, and only a bounded
+ * number of sentences are held in memory at once, so corpora of any size can be tagged.
+ */
+public class Tagger {
+
+    private static final int QUEUE_CAPACITY = 256;
+
+    private final PipelinedParser parser;
+
+    private long numSentences;
+    private long numTokens;
+
+    /**
+     * Creates a tagger.
+     *
+     * @param classifier       trained classifier to tag sentences with
+     * @param predicateThreads number of threads identifying predicates
+     * @param argumentThreads  number of threads classifying arguments
+     */
+    public Tagger(SemanticClassifier classifier, int predicateThreads, int argumentThreads) {
+        parser = new PipelinedParser(classifier, predicateThreads, argumentThreads, QUEUE_CAPACITY);
+    }
+
+    /**
+     * Tags every sentence of a corpus file.
+     *
+     * @param inputLoc  corpus to tag
+     * @param outputLoc location to write the tagged corpus to
+     * @throws IOException          if the corpus cannot be read or the output cannot be written
+     * @throws InterruptedException if interrupted while tagging
+     */
+    public void tag(String inputLoc, String outputLoc) throws IOException, InterruptedException {
+        CorpusReader reader = new CorpusReader(inputLoc);
+        try {
+            final CorpusWriter writer = new CorpusWriter(outputLoc);
+            try {
+                parser.parse(reader, new PipelinedParser.Sink() {
+                    @Override
+                    public void accept(SemanticFrameSet frameSet) throws IOException {
+                        writer.write(frameSet);
+                        numSentences++;
+                        numTokens += frameSet.size();
+                    }
+                });
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns the number of sentences tagged so far.
+     *
+     * @return number of sentences
+     */
+    public long getNumSentences() {
+        return numSentences;
+    }
+
+    /**
+     * Returns the number of tokens in the sentences tagged so far.
+     *
+     * @return number of tokens
+     */
+    public long getNumTokens() {
+        return numTokens;
+    }
+
+    /**
+     * Tags a corpus file.
+     *
+     * @param args predicate classifier file, argument classifier file, corpus to tag,
+     *             location to write the tagged corpus to, and optionally the number of threads to use
+     * @throws IOException            if the classifiers or corpus cannot be read or the output cannot be written
+     * @throws ClassNotFoundException if the classifier files do not hold classifiers
+     * @throws InterruptedException   if interrupted while tagging
+     */
+    public static void main(String[] args) throws IOException, ClassNotFoundException, InterruptedException {
+        if (args.length < 4 || args.length > 5) {
+            System.err.println("Usage: Tagger <predicate classifier> <argument classifier> " +
+                    "<input corpus> <output corpus> [threads]");
+            System.exit(1);
+        }
+
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        //argument classification is by far the more expensive stage, so it gets most of the threads
+        int predicateThreads = Math.max(1, threads / 4);
+        int argumentThreads = Math.max(1, threads - predicateThreads);
+
+        PredicateClassifier predicateClassifier = PredicateClassifier.importClassifier(args[0]);
+        ArgumentClassifier argumentClassifier = ArgumentClassifier.importClassifier(args[1]);
+        SemanticClassifier classifier = new StructuredClassifier(argumentClassifier, predicateClassifier,
+                new ArrayList<SemanticFrameSet>());
+
+        Tagger tagger = new Tagger(classifier, predicateThreads, argumentThreads);
+
+        long startTime = System.nanoTime();
+        tagger.tag(args[2], args[3]);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.err.format("Tagged %d sentences (%d tokens) in %.2fs: %.1f sentences/s, %.1f tokens/s%n",
+                tagger.getNumSentences(), tagger.getNumTokens(), seconds,
+                tagger.getNumSentences() / seconds, tagger.getNumTokens() / seconds);
+    }
+}
@@ -0,0 +1,83 @@
+package spinach.argumentclassifier;
+
+import spinach.argumentclassifier.featuregen.ArgumentFeatureGenerator;
+import spinach.classifier.PerceptronClassifier;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+import spinach.sentence.TokenSentenceAndPredicates;
+
+import java.util.List;
+
+/**
+ * An implementation of an ArgumentClassifier that picks a decoding strategy for each predicate.
+ * Predicates with few argument candidates are classified easiest first
+ * (as in {@link EasyFirstArgumentClassifier}), which is usually more accurate;
+ * predicates with many candidates are classified left to right
+ * (as in {@link LeftRightArgumentClassifier}), since easy-first decoding rescores every
+ * remaining candidate after each argument, and so grows quadratically with the number of candidates.
+ * <p/>
+ * Both strategies share the same perceptron and feature generator, so the classifier is trained
+ * just like the others. The candidate count at which to switch strategies can be chosen
+ * on a development set with {@link spinach.classify.AdaptiveCalibration}.
+ */
+public class AdaptiveArgumentClassifier extends ArgumentClassifier {
+
+    private static final long serialVersionUID = -3521174929316388610L;
+
+    private int easyFirstMaxCandidates;
+
+    /**
+     * Instantiates a new AdaptiveArgumentClassifier.
+     *
+     * @param classifier             a Perceptron classifier that this ArgumentClassifier is based upon
+     * @param featureGenerator       that generates features for each input
+     * @param easyFirstMaxCandidates largest number of argument candidates for which a predicate
+     *                               is classified easiest first
+     */
+    public AdaptiveArgumentClassifier(PerceptronClassifier classifier, ArgumentFeatureGenerator featureGenerator,
+                                      int easyFirstMaxCandidates) {
+        super(classifier, featureGenerator);
+        this.easyFirstMaxCandidates = easyFirstMaxCandidates;
+    }
+
+    @Override
+    protected SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates, boolean training,
+                                                   DecodeContext context) {
+
+        SemanticFrameSet frameSet = new SemanticFrameSet(sentenceAndPredicates);
+        context.reset(frameSet);
+
+        for (Token predicate : frameSet.getPredicateList()) {
+            List<Token> candidates = candidatesOf(sentenceAndPredicates, predicate);
+            if (candidates.size() <= easyFirstMaxCandidates) {
+                classifyEasyFirst(context, predicate, candidates, training);
+            } else {
+                context.argumentLabelScores.clear();
+                addLeftRightCandidates(predicate, candidates, context.argumentLabelScores, training);
+                classifyLeftToRight(frameSet, predicate, context.argumentLabelScores, training);
+            }
+        }
+
+        context.clear();
+        return frameSet;
+    }
+
+    /**
+     * Sets the largest number of argument candidates for which a predicate is classified easiest first.
+     * Predicates with more candidates are classified left to right.
+     *
+     * @param easyFirstMaxCandidates maximum number of candidates, or a negative number to always classify left to right
+     */
+    public void setEasyFirstMaxCandidates(int easyFirstMaxCandidates) {
+        this.easyFirstMaxCandidates = easyFirstMaxCandidates;
+    }
+
+    /**
+     * Returns the largest number of argument candidates for which a predicate is classified easiest first.
+     *
+     * @return maximum number of candidates
+     */
+    public int getEasyFirstMaxCandidates() {
+        return easyFirstMaxCandidates;
+    }
+}
@@ -0,0 +1,234 @@
+package spinach.argumentclassifier;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+import spinach.sentence.TokenSentence;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cheap first pass over the argument candidates of a predicate, that removes the
+ * candidates that are very unlikely to be arguments before the argument classifier
+ * generates features for and scores them.
+ * <p/>
+ * Candidates are scored by a small averaged perceptron over a few local features
+ * (dependency relations, parts of speech, direction and distance from the predicate,
+ * and how far up the predicate's ancestors the candidate hangs), hashed into a fixed
+ * number of weights. Candidates scoring below a threshold are pruned; the threshold is
+ * chosen to keep some fraction of the gold arguments of a set of sentences.
+ */
+public class ArgumentCandidatePruner implements Serializable {
+
+    private static final long serialVersionUID = -6208350419275043471L;
+
+    private static final int NUM_WEIGHTS = 1 << 16;
+    private static final int NUM_TEMPLATES = 11;
+
+    private final double[] weights = new double[NUM_WEIGHTS];
+    private double threshold = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Trains the pruner on a set of sentences with gold arguments, with an averaged perceptron.
+     * Until {@link #calibrate} is called, no candidates are pruned.
+     *
+     * @param frameSets sentences to train on
+     * @param epochs    number of passes over the sentences
+     */
+    public void train(Iterable<SemanticFrameSet> frameSets, int epochs) {
+        Arrays.fill(weights, 0);
+        double[] weightedUpdates = new double[NUM_WEIGHTS];
+        int[] features = new int[NUM_TEMPLATES];
+        long time = 1;
+
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            for (SemanticFrameSet frameSet : frameSets) {
+                for (Token predicate : frameSet.getPredicateList()) {
+                    Map<Token, String> goldArguments = frameSet.argumentsOf(predicate);
+                    List<Token> ancestors = ancestorsOf(frameSet, predicate);
+
+                    for (Token candidate : ArgumentClassifier.argumentCandidates(frameSet, predicate)) {
+                        featuresOf(frameSet, predicate, ancestors, candidate, features);
+                        int gold = goldArguments.containsKey(candidate) ? 1 : -1;
+                        if (gold * score(features) <= 0) {
+                            for (int f : features) {
+                                weights[f] += gold;
+                                weightedUpdates[f] += time * gold;
+                            }
+                        }
+                        time++;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < NUM_WEIGHTS; i++)
+            weights[i] -= weightedUpdates[i] / time;
+        threshold = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Chooses the pruning threshold so that at least some fraction of the gold arguments
+     * in a set of sentences are kept (of those that are argument candidates at all).
+     *
+     * @param frameSets    sentences with gold arguments, preferably not the ones the pruner was trained on
+     * @param recallTarget fraction of gold arguments to keep, more than 0 and at most 1
+     * @return fraction of all argument candidates in the sentences that are kept
+     */
+    public double calibrate(Iterable<SemanticFrameSet> frameSets, double recallTarget) {
+        if (!(recallTarget > 0 && recallTarget <= 1))
+            throw new IllegalArgumentException("Recall target must be more than 0 and at most 1");
+
+        List<Double> goldScores = new ArrayList<Double>();
+        List<Double> allScores = new ArrayList<Double>();
+        int[] features = new int[NUM_TEMPLATES];
+
+        for (SemanticFrameSet frameSet : frameSets) {
+            for (Token predicate : frameSet.getPredicateList()) {
+                Map<Token, String> goldArguments = frameSet.argumentsOf(predicate);
+                List<Token> ancestors = ancestorsOf(frameSet, predicate);
+
+                for (Token candidate : ArgumentClassifier.argumentCandidates(frameSet, predicate)) {
+                    featuresOf(frameSet, predicate, ancestors, candidate, features);
+                    double score = score(features);
+                    allScores.add(score);
+                    if (goldArguments.containsKey(candidate))
+                        goldScores.add(score);
+                }
+            }
+        }
+
+        if (goldScores.isEmpty()) {
+            threshold = Double.NEGATIVE_INFINITY;
+            return 1;
+        }
+
+        Collections.sort(goldScores, Collections.<Double>reverseOrder());
+        int numKept = (int) Math.ceil(recallTarget * goldScores.size());
+        threshold = numKept == 0 ? Double.POSITIVE_INFINITY : goldScores.get(numKept - 1);
+
+        int keptCandidates = 0;
+        for (double score : allScores)
+            if (score >= threshold)
+                keptCandidates++;
+
+        return (double) keptCandidates / allScores.size();
+    }
+
+    /**
+     * Removes the candidates that are unlikely to be arguments of a predicate.
+     *
+     * @param sentence   sentence with the predicate
+     * @param predicate  predicate the candidates are for
+     * @param candidates argument candidates of the predicate, in sentence order
+     * @return candidates that are kept, in the same order
+     */
+    public List<Token> prune(TokenSentence sentence, Token predicate, List<Token> candidates) {
+        if (threshold == Double.NEGATIVE_INFINITY)
+            return candidates;
+
+        List<Token> ancestors = ancestorsOf(sentence, predicate);
+        int[] features = new int[NUM_TEMPLATES];
+        List<Token> kept = new ArrayList<Token>(candidates.size());
+
+        for (Token candidate : candidates) {
+            featuresOf(sentence, predicate, ancestors, candidate, features);
+            if (score(features) >= threshold)
+                kept.add(candidate);
+        }
+
+        return kept;
+    }
+
+    /**
+     * Sets the score below which candidates are pruned.
+     *
+     * @param threshold pruning threshold, or negative infinity to keep every candidate
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the score below which candidates are pruned.
+     *
+     * @return pruning threshold
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    private double score(int[] features) {
+        double score = 0;
+        for (int f : features)
+            score += weights[f];
+        return score;
+    }
+
+    /*
+    The predicate followed by each of its ancestors, up to the root.
+     */
+    private static List<Token> ancestorsOf(TokenSentence sentence, Token predicate) {
+        List<Token> ancestors = new ArrayList<Token>();
+        for (Token t = predicate; t != null; t = t.headSentenceIndex < 0 ? null : sentence.getParent(t))
+            ancestors.add(t);
+        return ancestors;
+    }
+
+    private static void featuresOf(TokenSentence sentence, Token predicate, List<Token> ancestors,
+                                   Token candidate, int[] features) {
+        //how many ancestors above the predicate the candidate's head is; the root itself is one above that
+        int level;
+        if (candidate.headSentenceIndex < 0) {
+            level = ancestors.size();
+        } else {
+            Token head = sentence.getParent(candidate);
+            level = ancestors.indexOf(head);
+            if (level < 0)
+                level = ancestors.size();
+        }
+        level = Math.min(level, 4);
+
+        int offset = candidate.sentenceIndex - predicate.sentenceIndex;
+        int direction = Integer.signum(offset);
+        int distance = bucket(Math.abs(offset));
+
+        String argRelation = candidate.syntacticHeadRelation;
+        String predRelation = predicate.syntacticHeadRelation;
+
+        features[0] = hash(0, 0, 0, 0);
+        features[1] = hash(1, argRelation.hashCode(), 0, 0);
+        features[2] = hash(2, candidate.pos.hashCode(), 0, 0);
+        features[3] = hash(3, predicate.pos.hashCode(), 0, 0);
+        features[4] = hash(4, candidate.pos.hashCode(), argRelation.hashCode(), 0);
+        features[5] = hash(5, level, argRelation.hashCode(), 0);
+        features[6] = hash(6, direction, distance, 0);
+        features[7] = hash(7, predicate.pos.hashCode(), argRelation.hashCode(), direction);
+        features[8] = hash(8, level, direction, 0);
+        features[9] = hash(9, direction, distance, argRelation.hashCode());
+        features[10] = hash(10, predRelation.hashCode(), argRelation.hashCode(), 0);
+    }
+
+    private static int bucket(int distance) {
+        if (distance <= 3)
+            return distance;
+        if (distance <= 6)
+            return 4;
+        if (distance <= 10)
+            return 5;
+        return 6;
+    }
+
+    private static int hash(int template, int a, int b, int c) {
+        int h = template * 0x9e3779b1;
+        h = (h ^ a) * 0x85ebca6b;
+        h = (h ^ b) * 0xc2b2ae35;
+        h = (h ^ c) * 0x27d4eb2f;
+        h ^= h >>> 15;
+        return h & (NUM_WEIGHTS - 1);
+    }
+}
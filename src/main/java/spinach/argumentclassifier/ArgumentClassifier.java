@@ -4,9 +4,13 @@ import com.google.common.collect.Sets;
 import edu.stanford.nlp.classify.Dataset;
 import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.util.Pair;
 import spinach.argumentclassifier.featuregen.ArgumentFeatureGenerator;
 import spinach.argumentclassifier.featuregen.ExtensibleFeatureGenerator;
+import spinach.classifier.FeatureKeySink;
 import spinach.classifier.PerceptronClassifier;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
@@ -33,6 +37,11 @@ public abstract class ArgumentClassifier implements Serializable {
     protected final PerceptronClassifier classifier;
     private final ArgumentFeatureGenerator featureGenerator;
 
+    private ArgumentCandidatePruner candidatePruner;
+
+    private LabelDictionary labelDictionary;
+    private boolean restrictTrainingLabels;
+
     public final static String NIL_LABEL = "NIL";
 
     private static final long serialVersionUID = 1008397275270930536L;
@@ -57,7 +66,23 @@ public abstract class ArgumentClassifier implements Serializable {
      * @return initial sentence with predicates with added arguments
      */
     public SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates) {
-        return framesWithArguments(sentenceAndPredicates, false);
+        return framesWithArguments(sentenceAndPredicates, false, new DecodeContext());
+    }
+
+    /**
+     * Constructs a SemanticFrameSet from a sentence with predicates, keeping the
+     * state of the classification in some context. Classification does not modify
+     * this classifier, so any number of threads may classify sentences at once,
+     * each with its own context, as long as the classifier is not being trained.
+     *
+     * @param sentenceAndPredicates sentence with predicates
+     * @param context               context to keep classification state in, owned by the calling thread
+     * @return initial sentence with predicates with added arguments
+     */
+    public SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates,
+                                                DecodeContext context) {
+        context.begin();
+        return framesWithArguments(sentenceAndPredicates, false, context);
     }
 
     /**
@@ -68,11 +93,11 @@ public abstract class ArgumentClassifier implements Serializable {
      * @return initial sentence with predicates with added arguments
      */
     public SemanticFrameSet trainingFramesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates) {
-        return framesWithArguments(sentenceAndPredicates, true);
+        return framesWithArguments(sentenceAndPredicates, true, new DecodeContext());
     }
 
     protected abstract SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates,
-                                                            boolean training);
+                                                            boolean training, DecodeContext context);
 
     /**
      * Returns all the possible argument candidates for a given sentence and predicate
@@ -104,6 +129,19 @@ public abstract class ArgumentClassifier implements Serializable {
         return argumentCandidates;
     }
 
+    /**
+     * Returns the argument candidates of a predicate that this classifier considers;
+     * that is, all the possible candidates, less those removed by the candidate pruner, if there is one.
+     *
+     * @param sentence  sentence to analyze
+     * @param predicate predicate to find argument candidates of
+     * @return list of argument candidates, in order
+     */
+    public List<Token> candidatesOf(TokenSentence sentence, Token predicate) {
+        List<Token> candidates = argumentCandidates(sentence, predicate);
+        return candidatePruner == null ? candidates : candidatePruner.prune(sentence, predicate, candidates);
+    }
+
     /**
      * Gives the scores for each argument label, given a sentence, predicate, and argument candidate
      *
@@ -115,14 +153,156 @@ public abstract class ArgumentClassifier implements Serializable {
      */
     protected Counter<String> argClassScores(SemanticFrameSet frameSet, Token possibleArg, Token predicate,
                                              boolean training) {
+        List<String> labels = labelsOf(predicate, training);
+        if (!training)
+            return classifier.scoresOf(keysOf(frameSet, possibleArg, predicate),
+                    labels != null ? labels : classifier.indexedLabels());
+
         Datum<String, String> d = featureGenerator.datumFrom(frameSet, possibleArg, predicate);
-        return training ? classifier.trainingScores(d) :
-                classifier.scoresOf(d);
+        if (labels != null)
+            return classifier.scoresOf(d, labels, true);
+        return classifier.trainingScores(d);
+    }
+
+    /*
+    Outside of training, features are scored from their keys, which saves building their names.
+     */
+    private FeatureKeySink keysOf(SemanticFrameSet frameSet, Token possibleArg, Token predicate) {
+        FeatureKeySink keys = new FeatureKeySink();
+        featureGenerator.keysFrom(frameSet, possibleArg, predicate, keys);
+        return keys;
+    }
+
+    /*
+    Labels that arguments of some predicate may take, or null if every label should be scored.
+     */
+    private List<String> labelsOf(Token predicate, boolean training) {
+        if (labelDictionary == null || (training && !restrictTrainingLabels))
+            return null;
+        return labelDictionary.labelsOf(predicate);
     }
 
     protected void updateCounterScores(SemanticFrameSet frameSet, Token possibleArg, Token predicate,
                                        Counter<String> scores, boolean training) {
-        classifier.updateCounterScores(featureGenerator.datumFrom(frameSet, possibleArg, predicate), scores, training);
+        if (training)
+            classifier.updateCounterScores(featureGenerator.datumFrom(frameSet, possibleArg, predicate), scores, true);
+        else
+            classifier.updateCounterScores(keysOf(frameSet, possibleArg, predicate), scores);
+    }
+
+    /**
+     * Adds argument candidates to a map of label scores, with all the labels the predicate's arguments may take.
+     *
+     * @param predicate           predicate the candidates are for
+     * @param candidates          argument candidates of the predicate, in sentence order
+     * @param argumentLabelScores map to add the candidates to
+     * @param training            whether or not the candidates are being classified for training
+     */
+    protected void addLeftRightCandidates(Token predicate, Collection<Token> candidates,
+                                          Map<Token, Counter<String>> argumentLabelScores, boolean training) {
+        Collection<String> labels = labelsOf(predicate, training);
+        if (labels == null)
+            labels = classifier.indexedLabels();
+
+        for (Token possibleArg : candidates)
+            argumentLabelScores.put(possibleArg, new ClassicCounter<String>(labels));
+    }
+
+    /**
+     * Classifies argument candidates of a predicate one by one, in the order of the map,
+     * scoring each candidate just before it is classified.
+     *
+     * @param frameSet            sentence being classified, which arguments are added to
+     * @param predicate           predicate in that sentence
+     * @param argumentLabelScores candidates left to classify, and their possible labels
+     * @param training            whether or not to use training weights
+     */
+    protected void classifyLeftToRight(SemanticFrameSet frameSet, Token predicate,
+                                       Map<Token, Counter<String>> argumentLabelScores, boolean training) {
+        for (Token arg : argumentLabelScores.keySet()) {
+
+            Collection<String> labels = argumentLabelScores.get(arg).keySet();
+            String argLabel = training ?
+                    classifier.argMax(featureGenerator.datumFrom(frameSet, arg, predicate), labels, true) :
+                    classifier.argMax(keysOf(frameSet, arg, predicate), labels);
+
+            if (argLabel != null && !argLabel.equals(NIL_LABEL)) {
+                frameSet.addArgument(predicate, arg, argLabel);
+                enforceConsistency(predicate, arg, argLabel, frameSet, training, argumentLabelScores);
+            }
+        }
+    }
+
+    /**
+     * Classifies the argument candidates of a predicate easiest first: every candidate is scored,
+     * the candidate with the highest scoring label is classified, and the remaining candidates
+     * are rescored, until all of them have been classified.
+     * <p/>
+     * If the context's budget has run out, the remaining candidates are classified left to right
+     * instead, and the predicate is marked as degraded.
+     *
+     * @param context    context of the sentence being classified, which arguments are added to
+     * @param predicate  predicate in that sentence
+     * @param candidates argument candidates of the predicate, in sentence order
+     * @param training   whether or not to use training weights
+     */
+    protected void classifyEasyFirst(DecodeContext context, Token predicate, Collection<Token> candidates,
+                                     boolean training) {
+        SemanticFrameSet frameSet = context.frameSet;
+        Map<Token, Counter<String>> argumentLabelScores = context.argumentLabelScores;
+        argumentLabelScores.clear();
+
+        if (context.isOverBudget()) {
+            frameSet.markDegraded(predicate);
+            addLeftRightCandidates(predicate, candidates, argumentLabelScores, training);
+            classifyLeftToRight(frameSet, predicate, argumentLabelScores, training);
+            return;
+        }
+
+        for (Token possibleArg : candidates)
+            argumentLabelScores.put(possibleArg, argClassScores(frameSet, possibleArg, predicate, training));
+
+        while (!argumentLabelScores.isEmpty()) {
+            if (context.isOverBudget()) {    //finish the remaining candidates, in sentence order
+                frameSet.markDegraded(predicate);
+                classifyLeftToRight(frameSet, predicate, argumentLabelScores, training);
+                return;
+            }
+
+            Pair<Token, String> bestArgAndLabel = bestArgAndLabel(argumentLabelScores);
+            Token arg = bestArgAndLabel.first();
+            String argLabel = bestArgAndLabel.second();
+
+            argumentLabelScores.remove(arg);
+
+            if (argLabel == null || argLabel.equals(NIL_LABEL))
+                continue;
+
+            frameSet.addArgument(predicate, arg, argLabel);
+
+            for (Map.Entry<Token, Counter<String>> entry : argumentLabelScores.entrySet())
+                updateCounterScores(frameSet, entry.getKey(), predicate, entry.getValue(), training);
+
+            enforceConsistency(predicate, arg, argLabel, frameSet, training, argumentLabelScores);
+        }
+    }
+
+    private static Pair<Token, String> bestArgAndLabel(Map<Token, Counter<String>> argumentLabelScores) {
+        double bestScore = Double.NEGATIVE_INFINITY;
+        Token best = null;
+        String argMax = null;
+
+        for (Map.Entry<Token, Counter<String>> entry : argumentLabelScores.entrySet()) {
+            String bestLabel = Counters.argmax(entry.getValue());
+            double value = entry.getValue().getCount(bestLabel);
+            if (value > bestScore) {
+                bestScore = value;
+                best = entry.getKey();
+                argMax = bestLabel;
+            }
+        }
+
+        return new Pair<Token, String>(best, argMax);
     }
 
     /**
@@ -134,17 +314,11 @@ public abstract class ArgumentClassifier implements Serializable {
     private Dataset<String, String> datasetFrom(SemanticFrameSet frameSet) {
         Dataset<String, String> dataset = new Dataset<String, String>();
         for (Token predicate : frameSet.getPredicateList()) {
-            for (Token argument : argumentCandidates(frameSet, predicate)) {
+            for (Token argument : candidatesOf(frameSet, predicate)) {
                 BasicDatum<String, String> datum =
                         (BasicDatum<String, String>) featureGenerator.datumFrom(frameSet, argument, predicate);
-                String label = NIL_LABEL;
-                for (Map.Entry<Token, String> p : frameSet.argumentsOf(predicate).entrySet()) {
-                    if (p.getKey().equals(argument)) {
-                        label = p.getValue();
-                        break;
-                    }
-                }
-                datum.setLabel(label);
+                String label = frameSet.argumentsOf(predicate).get(argument);
+                datum.setLabel(label == null ? NIL_LABEL : label);
                 dataset.add(datum);
             }
         }
@@ -157,12 +331,14 @@ public abstract class ArgumentClassifier implements Serializable {
      *
      * @param frameSets Collection of framesets to generate a dataset
      */
-    public void unstructuredTrain(Collection<SemanticFrameSet> frameSets) {
+    public void unstructuredTrain(Iterable<SemanticFrameSet> frameSets) {
         Dataset<String, String> dataset = new Dataset<String, String>();
         for (SemanticFrameSet frameSet : frameSets)
             dataset.addAll(datasetFrom(frameSet));
 
-        dataset.applyFeatureCountThreshold(FEATURE_COUNT_THRESHOLD);
+        //a reduced feature generator has already left out infrequent features
+        if (!featureGenerator.isFeatureSetReduced())
+            dataset.applyFeatureCountThreshold(FEATURE_COUNT_THRESHOLD);
 
         classifier.train(dataset);
     }
@@ -182,7 +358,7 @@ public abstract class ArgumentClassifier implements Serializable {
                 Map<Token, String> goldArguments = goldFrame.argumentsOf(predicate);
                 Map<Token, String> predictedArguments = predictedFrame.argumentsOf(predicate);
 
-                for (Token t : argumentCandidates(predictedFrame, predicate)) {
+                for (Token t : candidatesOf(predictedFrame, predicate)) {
                     String goldLabel = goldArguments.get(t);
                     String predictedLabel = predictedArguments.get(t);
 
@@ -204,7 +380,7 @@ public abstract class ArgumentClassifier implements Serializable {
             } else {
                 Map<Token, String> goldArguments = goldFrame.argumentsOf(predicate);
 
-                for (Token t : argumentCandidates(predictedFrame, predicate)) {
+                for (Token t : candidatesOf(predictedFrame, predicate)) {
                     String goldLabel = goldArguments.get(t);
                     String predictedLabel = NIL_LABEL;
 
@@ -272,6 +448,47 @@ public abstract class ArgumentClassifier implements Serializable {
         return descendants;
     }
 
+    /**
+     * Sets a pruner to remove unlikely argument candidates before they are scored,
+     * both when training and when classifying. The pruner should be trained and calibrated
+     * before this classifier is trained.
+     *
+     * @param candidatePruner pruner to use, or null to consider every candidate
+     */
+    public void setCandidatePruner(ArgumentCandidatePruner candidatePruner) {
+        this.candidatePruner = candidatePruner;
+    }
+
+    /**
+     * Sets a dictionary of the labels each predicate's arguments may take, so that only those
+     * labels are scored, rather than every label known to the classifier.
+     *
+     * @param labelDictionary        dictionary to use, or null to score every label
+     * @param restrictTrainingLabels whether or not to restrict the labels during training as well
+     */
+    public void setLabelDictionary(LabelDictionary labelDictionary, boolean restrictTrainingLabels) {
+        this.labelDictionary = labelDictionary;
+        this.restrictTrainingLabels = restrictTrainingLabels;
+    }
+
+    /**
+     * Get the label dictionary for this argument classifier.
+     *
+     * @return this classifier's label dictionary, or null if there is none
+     */
+    public LabelDictionary getLabelDictionary() {
+        return labelDictionary;
+    }
+
+    /**
+     * Get the candidate pruner for this argument classifier.
+     *
+     * @return this classifier's candidate pruner, or null if there is none
+     */
+    public ArgumentCandidatePruner getCandidatePruner() {
+        return candidatePruner;
+    }
+
     /**
      * Get the feature generator for this argument classifier.
      *
@@ -311,7 +528,7 @@ public abstract class ArgumentClassifier implements Serializable {
      * @param frameSets set of sentences
      * @return collection of labels encountered in those sentences (plus NIL label)
      */
-    public static Collection<String> getLabelSet(Collection<SemanticFrameSet> frameSets) {
+    public static Collection<String> getLabelSet(Iterable<SemanticFrameSet> frameSets) {
         List<String> labels = new ArrayList<String>();
         labels.add(NIL_LABEL);
         for (SemanticFrameSet s : frameSets)
@@ -0,0 +1,80 @@
+package spinach.argumentclassifier;
+
+import edu.stanford.nlp.stats.Counter;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the state of a single argument classification, so that the classifier itself
+ * keeps no state between calls, and one classifier can be shared between threads.
+ * <p/>
+ * A context may also limit the time spent on each sentence.
+ * A context belongs to one thread at a time; it may be reused for later sentences
+ * by the same thread, but not shared by threads decoding at the same time.
+ */
+public class DecodeContext {
+
+    SemanticFrameSet frameSet;
+    final Map<Token, Counter<String>> argumentLabelScores = new LinkedHashMap<Token, Counter<String>>();
+
+    private long budgetNanos;
+    private long deadline;
+
+    /**
+     * Creates an empty decode context, with no time budget.
+     */
+    public DecodeContext() {
+    }
+
+    /**
+     * Sets how long classifying the arguments of each sentence may take. Once a sentence has
+     * used up its budget, classifiers that support it finish the sentence with a cheaper
+     * strategy, and mark the predicates decoded that way as degraded
+     * (see {@link SemanticFrameSet#isDegraded(Token)}).
+     *
+     * @param budget time allowed for each sentence, or 0 for no limit
+     * @param unit   unit of the budget
+     */
+    public void setBudget(long budget, TimeUnit unit) {
+        budgetNanos = unit.toNanos(budget);
+    }
+
+    /**
+     * Starts the budget for a new sentence.
+     */
+    void begin() {
+        if (budgetNanos > 0)
+            deadline = System.nanoTime() + budgetNanos;
+    }
+
+    /**
+     * Whether or not the sentence being classified has used up its budget.
+     *
+     * @return true if there is a budget and it has run out
+     */
+    boolean isOverBudget() {
+        return budgetNanos > 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Starts decoding a new sentence, discarding any state from the previous one.
+     *
+     * @param frameSet frameset that arguments are being added to
+     */
+    void reset(SemanticFrameSet frameSet) {
+        this.frameSet = frameSet;
+        argumentLabelScores.clear();
+    }
+
+    /**
+     * Releases the sentence that was last decoded, so that it is not kept in memory by a reused context.
+     */
+    void clear() {
+        frameSet = null;
+        argumentLabelScores.clear();
+    }
+}
@@ -1,31 +1,30 @@
 package spinach.argumentclassifier;
 
-import edu.stanford.nlp.stats.Counter;
-import edu.stanford.nlp.stats.Counters;
-import edu.stanford.nlp.util.Pair;
 import spinach.argumentclassifier.featuregen.ArgumentFeatureGenerator;
 import spinach.classifier.PerceptronClassifier;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
 import spinach.sentence.TokenSentenceAndPredicates;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
-
 /**
  * An implementation of an ArgumentClassifier that iterates left-to-right
  * through the predicates, and generates scores for each of the predicate's
  * argument candidates simultaneously. It then classifies the argument with
  * the highest score and label, regenerates the scores for the remaining args
  * and repeats until all the arguments have been classified.
+ * <p/>
+ * The state of each classification is kept in a {@link DecodeContext}, so one
+ * classifier may classify sentences on several threads at once.
+ * <p/>
+ * Since each classified argument means rescoring the remaining candidates, long sentences
+ * can take much longer than others. If the context's time budget runs out, the remaining
+ * candidates, and the remaining predicates, are classified left to right instead
+ * (as in {@link LeftRightArgumentClassifier}), and those predicates are marked as degraded.
  */
 public class EasyFirstArgumentClassifier extends ArgumentClassifier {
 
     private static final long serialVersionUID = 7822422638276122112L;
 
-    private transient Map<Token, Counter<String>> argumentLabelScores;
-    private transient SemanticFrameSet frameSet;
-
     /**
      * Instantiates a new EasyFirstArgumentClassifier.
      *
@@ -37,59 +36,16 @@ public class EasyFirstArgumentClassifier extends ArgumentClassifier {
     }
 
     @Override
-    protected SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates, boolean training) {
-
-        frameSet = new SemanticFrameSet(sentenceAndPredicates);
-
-        for (Token predicate : frameSet.getPredicateList()) {
-            argumentLabelScores = new LinkedHashMap<Token, Counter<String>>();
+    protected SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates, boolean training,
+                                                   DecodeContext context) {
 
-            for (Token possibleArg :
-                    ArgumentClassifier.argumentCandidates(sentenceAndPredicates, predicate)) {
-                argumentLabelScores.put(possibleArg, argClassScores(frameSet, possibleArg, predicate, training));
-            }
+        SemanticFrameSet frameSet = new SemanticFrameSet(sentenceAndPredicates);
+        context.reset(frameSet);
 
-            while (!argumentLabelScores.isEmpty()) {
-                Pair<Token, String> bestArgAndLabel = bestArgAndLabel();
-                Token arg = bestArgAndLabel.first();
-                String argLabel = bestArgAndLabel.second();
-
-                argumentLabelScores.remove(arg);
-
-                if (argLabel == null || argLabel.equals(NIL_LABEL))
-                    continue;
-
-                classifyArg(arg, predicate, argLabel, training);
-            }
-        }
+        for (Token predicate : frameSet.getPredicateList())
+            classifyEasyFirst(context, predicate, candidatesOf(sentenceAndPredicates, predicate), training);
 
+        context.clear();
         return frameSet;
     }
-
-    private Pair<Token, String> bestArgAndLabel() {
-        double bestScore = Double.NEGATIVE_INFINITY;
-        Token best = null;
-        String argMax = null;
-
-        for (Map.Entry<Token, Counter<String>> entry : argumentLabelScores.entrySet()) {
-            String bestLabel = Counters.argmax(entry.getValue());
-            double value = entry.getValue().getCount(bestLabel);
-            if (value > bestScore) {
-                bestScore = value;
-                best = entry.getKey();
-                argMax = bestLabel;
-            }
-        }
-
-        return new Pair<Token, String>(best, argMax);
-    }
-
-    private void classifyArg(Token arg, Token predicate, String argLabel, boolean training) {
-        frameSet.addArgument(predicate, arg, argLabel);
-
-        for (Map.Entry<Token, Counter<String>> entry : argumentLabelScores.entrySet())
-            updateCounterScores(frameSet, entry.getKey(), predicate, entry.getValue(), training);
-
-        enforceConsistency(predicate, arg, argLabel, frameSet, training, argumentLabelScores);
-    }
 }
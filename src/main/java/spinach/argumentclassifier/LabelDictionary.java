@@ -0,0 +1,106 @@
+package spinach.argumentclassifier;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Keeps track of which argument labels each predicate lemma has been seen with,
+ * so that an argument classifier only needs to score those labels, rather than every
+ * label it knows. Lemmas that were seen too rarely back off to the labels seen with
+ * predicates of the same part of speech, and predicates with an unseen part of speech
+ * back off to every label. The NIL label is always included.
+ */
+public class LabelDictionary implements Serializable {
+
+    private static final long serialVersionUID = 4637298018834517232L;
+
+    private final Map<String, List<String>> lemmaLabels = new HashMap<String, List<String>>();
+    private final Map<String, List<String>> posLabels = new HashMap<String, List<String>>();
+    private final List<String> allLabels;
+
+    /**
+     * Builds a label dictionary from a set of sentences, using the labels of every predicate lemma seen.
+     *
+     * @param frameSets sentences with gold arguments
+     */
+    public LabelDictionary(Iterable<SemanticFrameSet> frameSets) {
+        this(frameSets, 1);
+    }
+
+    /**
+     * Builds a label dictionary from a set of sentences.
+     *
+     * @param frameSets          sentences with gold arguments
+     * @param minPredicateCount number of times a lemma must be seen as a predicate to get its own labels,
+     *                          rather than those of its part of speech
+     */
+    public LabelDictionary(Iterable<SemanticFrameSet> frameSets, int minPredicateCount) {
+        Map<String, Set<String>> lemmaSets = new HashMap<String, Set<String>>();
+        Map<String, Set<String>> posSets = new HashMap<String, Set<String>>();
+        Map<String, Integer> lemmaCounts = new HashMap<String, Integer>();
+        Set<String> all = new HashSet<String>();
+
+        for (SemanticFrameSet frameSet : frameSets) {
+            for (Token predicate : frameSet.getPredicateList()) {
+                Collection<String> labels = frameSet.argumentsOf(predicate).values();
+                addAll(lemmaSets, predicate.lemma, labels);
+                addAll(posSets, predicate.pos, labels);
+                all.addAll(labels);
+
+                Integer count = lemmaCounts.get(predicate.lemma);
+                lemmaCounts.put(predicate.lemma, count == null ? 1 : count + 1);
+            }
+        }
+
+        for (Map.Entry<String, Set<String>> entry : lemmaSets.entrySet())
+            if (lemmaCounts.get(entry.getKey()) >= minPredicateCount)
+                lemmaLabels.put(entry.getKey(), withNil(entry.getValue()));
+        for (Map.Entry<String, Set<String>> entry : posSets.entrySet())
+            posLabels.put(entry.getKey(), withNil(entry.getValue()));
+        allLabels = withNil(all);
+    }
+
+    private static void addAll(Map<String, Set<String>> sets, String key, Collection<String> labels) {
+        Set<String> set = sets.get(key);
+        if (set == null) {
+            set = new HashSet<String>();
+            sets.put(key, set);
+        }
+        set.addAll(labels);
+    }
+
+    private static List<String> withNil(Set<String> labels) {
+        List<String> list = new ArrayList<String>(labels.size() + 1);
+        list.add(ArgumentClassifier.NIL_LABEL);
+        for (String label : labels)
+            if (!label.equals(ArgumentClassifier.NIL_LABEL))
+                list.add(label);
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns the labels that arguments of some predicate may take.
+     *
+     * @param predicate predicate to look up
+     * @return labels seen with the predicate's lemma, or failing that its part of speech,
+     *         or failing that with any predicate; always including the NIL label
+     */
+    public List<String> labelsOf(Token predicate) {
+        List<String> labels = lemmaLabels.get(predicate.lemma);
+        if (labels == null)
+            labels = posLabels.get(predicate.pos);
+        return labels == null ? allLabels : labels;
+    }
+
+    /**
+     * Returns the number of lemmas that have their own labels.
+     *
+     * @return number of lemmas
+     */
+    public int numLemmas() {
+        return lemmaLabels.size();
+    }
+}
@@ -1,8 +1,6 @@
 package spinach.argumentclassifier;
 
-import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
-import edu.stanford.nlp.stats.Counters;
 import spinach.argumentclassifier.featuregen.ArgumentFeatureGenerator;
 import spinach.classifier.PerceptronClassifier;
 import spinach.sentence.SemanticFrameSet;
@@ -31,7 +29,8 @@ public class LeftRightArgumentClassifier extends ArgumentClassifier {
     }
 
     @Override
-    protected SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates, boolean training) {
+    protected SemanticFrameSet framesWithArguments(TokenSentenceAndPredicates sentenceAndPredicates, boolean training,
+                                                   DecodeContext context) {
 
         SemanticFrameSet frameSet = new SemanticFrameSet(sentenceAndPredicates);
 
@@ -39,22 +38,8 @@ public class LeftRightArgumentClassifier extends ArgumentClassifier {
             Map<Token, Counter<String>> argumentLabelScores =
                     new LinkedHashMap<Token, Counter<String>>();
 
-            for (Token possibleArg : argumentCandidates(frameSet, predicate)) {
-                Counter<String> argClassScores = new ClassicCounter<String>(classifier.indexedLabels());
-
-                argumentLabelScores.put(possibleArg, argClassScores);
-            }
-
-            for (Token arg : argumentLabelScores.keySet()) {
-
-                updateCounterScores(frameSet, arg, predicate, argumentLabelScores.get(arg), training);
-                String argLabel = Counters.argmax(argumentLabelScores.get(arg));
-
-                if (argLabel != null && !argLabel.equals(NIL_LABEL)) {
-                    frameSet.addArgument(predicate, arg, argLabel);
-                    enforceConsistency(predicate, arg, argLabel, frameSet, training, argumentLabelScores);
-                }
-            }
+            addLeftRightCandidates(predicate, candidatesOf(frameSet, predicate), argumentLabelScores, training);
+            classifyLeftToRight(frameSet, predicate, argumentLabelScores, training);
         }
 
         return frameSet;
@@ -1,12 +1,9 @@
 package spinach.argumentclassifier.featuregen;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
 import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
-import edu.stanford.nlp.stats.ClassicCounter;
-import edu.stanford.nlp.stats.Counter;
 import spinach.argumentclassifier.ArgumentClassifier;
+import spinach.classifier.*;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
 import spinach.sentence.TokenSentence;
@@ -19,7 +16,7 @@ import java.util.*;
  *
  * @author Calvin Huang
  */
-public class ArgumentFeatureGenerator implements Serializable {
+public class ArgumentFeatureGenerator implements ReducibleFeatureGenerator, Serializable {
 
     private static final long serialVersionUID = -976444842348771794L;
 
@@ -30,7 +27,36 @@ public class ArgumentFeatureGenerator implements Serializable {
      * <p/>
      * All structural features should be prefixed with this structural feature prefix.
      */
-    public static final String STRUCTURAL_FEATURE_PREFIX = "QQ";
+    public static final String STRUCTURAL_FEATURE_PREFIX = FeatureTemplates.STRUCTURAL_PREFIX;
+
+    private static final int ARG_LEMMA = FeatureTemplates.register("aL|");
+    private static final int ARG_FORM = FeatureTemplates.register("aF|");
+    private static final int ARG_POS = FeatureTemplates.register("aP|");
+    private static final int PRED_LEMMA = FeatureTemplates.register("pL|");
+    private static final int PRED_FORM = FeatureTemplates.register("pF|");
+    private static final int PRED_POS = FeatureTemplates.register("pP|");
+    private static final int PMOD_LEMMA = FeatureTemplates.register("pmodL|");
+    private static final int PMOD_FORM = FeatureTemplates.register("pmodF|");
+    private static final int PMOD_POS = FeatureTemplates.register("pmodP|");
+    private static final int PP_HEAD_LEMMA = FeatureTemplates.register("ppHeadL|");
+    private static final int PP_HEAD_FORM = FeatureTemplates.register("ppHeadF|");
+    private static final int ARG_LEMMA_PP_HEAD_FORM = FeatureTemplates.register("aL+ppHeadF|");
+    private static final int PRED_CHILD_RELS = FeatureTemplates.register("predCRel|");
+    private static final int PRED_CHILD_POS = FeatureTemplates.register("predCPos|");
+    private static final int VCIM_RELS = FeatureTemplates.register("vcimRel|");
+    private static final int VCIM_POS = FeatureTemplates.register("vcimPos|");
+    private static final int PATH = FeatureTemplates.register("path|");
+    private static final int PATH_POS = FeatureTemplates.register("pathP|");
+    private static final int PATH_LEMMA = FeatureTemplates.register("pathL|");
+    private static final int PRED_VOICE_DIRECTION = FeatureTemplates.register("pV+apDir|");
+    private static final int PATH_LENGTH = FeatureTemplates.register("pathLength|");
+    private static final int DISTANCE = FeatureTemplates.register("dist|");
+    private static final int DISTANCE_1 = FeatureTemplates.register("dist=1|");
+    private static final int DISTANCE_2 = FeatureTemplates.register("dist=2|");
+    private static final int DISTANCE_OVER_2 = FeatureTemplates.register("dist>2|");
+    private static final int PRED_RELATIVE_POSITION = FeatureTemplates.register("predRelPos|");
+    private static final int IS_CURRENT_PREDICATE = FeatureTemplates.register("isCurPred|");
+    private static final int PRED_VOICE = FeatureTemplates.register("pVoice|");
 
     /**
      * Any non-structural features appearing less than a certain number of times
@@ -40,6 +66,31 @@ public class ArgumentFeatureGenerator implements Serializable {
 
     private Set<String> allowedNonStructuralFeatures = new HashSet<String>();
     private boolean allowStructuralFeatures;
+    private boolean allowListBloomFilter;
+    private boolean featureSetReduced;
+    private transient volatile AllowList allowList;
+    private transient volatile FeatureGeneratorProfiler profiler;
+
+    /*
+    The allowed non-structural features, as a set of feature keys, which a sink
+    checks each feature against as soon as it is generated.
+     */
+    private final class AllowList implements FeatureFilter {
+        private final FeatureKeySet allowedKeys;
+
+        AllowList(Set<String> allowedFeatures, boolean bloomFilter) {
+            allowedKeys = new FeatureKeySet(allowedFeatures.size(), bloomFilter);
+            for (String feature : allowedFeatures)
+                allowedKeys.add(FeatureTemplates.keyOf(feature));
+        }
+
+        @Override
+        public boolean accepts(long key) {
+            if (FeatureTemplates.isStructural(FeatureTemplates.templateOf(key)))
+                return allowStructuralFeatures;
+            return allowedKeys.contains(key);
+        }
+    }
 
     /**
      * Generates a datum with features for some sentence, some argument, and some predicate.
@@ -76,23 +127,49 @@ public class ArgumentFeatureGenerator implements Serializable {
      */
     final Collection<String> reducedFeaturesOf(SemanticFrameSet sentence,
                                                Token argument, Token predicate) {
+        Collection<String> features = new HashSet<String>();
+        FeatureNameSink sink = new FeatureNameSink(features);
+        sink.setFilter(allowList());
+        generateFeatures(sentence, argument, predicate, sink);
+        return features;
+    }
 
-        if (allowedNonStructuralFeatures == null)
-            return featuresOf(sentence, argument, predicate);
-
-        Predicate<String> filter = new Predicate<String>() {
-            @Override
-            public boolean apply(String input) {
-                return allowedNonStructuralFeatures.contains(input) ||
-                        (isStructuralFeature(input) && allowStructuralFeatures);
-            }
-        };
-
-        return Collections2.filter(featuresOf(sentence, argument, predicate), filter);
+    /**
+     * Generates the keys (see {@link FeatureTemplates}) of the features that datumFrom() gives
+     * for some sentence, argument, and predicate, without building the features' names.
+     * Scoring the keys with {@link PerceptronClassifier#scoresOf(FeatureKeySink, Collection)}
+     * gives the same scores as scoring the datum.
+     *
+     * @param frameSet  SemanticFrameSet used to generate features
+     * @param argument  possible argument to generate features for
+     * @param predicate predicate that the argument is the argument of
+     * @param sink      sink to put the keys in; anything already in it is cleared
+     */
+    public void keysFrom(SemanticFrameSet frameSet, Token argument, Token predicate, FeatureKeySink sink) {
+        sink.clear();
+        sink.setFilter(allowList());
+        generateFeatures(frameSet, argument, predicate, sink);
     }
 
-    private boolean isStructuralFeature(String s) {
-        return s.startsWith(STRUCTURAL_FEATURE_PREFIX);
+    /*
+    Features are filtered once, as they are generated, rather than through a view
+    that checks every feature again each time it is iterated over.
+     */
+    private AllowList allowList() {
+        if (allowedNonStructuralFeatures == null)
+            return null;
+
+        AllowList list = allowList;
+        if (list == null) {
+            synchronized (this) {
+                list = allowList;
+                if (list == null) {
+                    list = new AllowList(allowedNonStructuralFeatures, allowListBloomFilter);
+                    allowList = list;
+                }
+            }
+        }
+        return list;
     }
 
     /**
@@ -103,141 +180,211 @@ public class ArgumentFeatureGenerator implements Serializable {
      * @param predicate predicate of argument
      * @return collection of features
      */
-    protected Collection<String> featuresOf(SemanticFrameSet sentence,
-                                            Token argument, Token predicate) {
-
+    protected final Collection<String> featuresOf(SemanticFrameSet sentence,
+                                                  Token argument, Token predicate) {
         Collection<String> features = new HashSet<String>();
+        generateFeatures(sentence, argument, predicate, new FeatureNameSink(features));
+        return features;
+    }
 
-        /*
-		 * Feature 1: argument (and modifier), predicate split lemma, form; pos
-		 */
-        features.add("aL|" + argument.lemma);
-        features.add("aF|" + argument.form);
-        features.add("aP|" + argument.pos);
-
-        features.add("pL|" + predicate.lemma);
-        features.add("pF|" + predicate.form);
-        features.add("pP|" + predicate.pos);
-
-        Token pmod = getPMOD(sentence, argument);
-        if (pmod != null) {
-            features.add("pmodL|" + pmod.lemma);
-            features.add("pmodF|" + pmod.form);
-            features.add("pmodP|" + pmod.pos);
-        }
+    /*
+    Whether the sink builds the features' names or only their keys, the same features are generated.
+    If there is a profiler, and it chooses to measure this call, each group of features is measured.
+     */
+    private void generateFeatures(SemanticFrameSet sentence, Token argument, Token predicate, FeatureSink sink) {
+        FeatureGeneratorProfiler p = profiler;
+        addFeatures(sentence, argument, predicate, sink, p != null && p.sample() ? p : null);
+    }
+
+    /**
+     * Generates the features for a sentence, argument, and predicate, adding each to a sink.
+     * Subclasses adding features of their own should add them through
+     * {@link #addFeatures(IndividualFeatureGenerator, SemanticFrameSet, Token, Token, FeatureSink,
+     * FeatureGeneratorProfiler)}, so that they are profiled along with the rest.
+     *
+     * @param sentence  sentence of predicate and argument
+     * @param argument  argument candidate to generate features for
+     * @param predicate predicate of argument
+     * @param sink      sink to add features to
+     * @param profiler  profiler measuring this call, or null if it is not measured
+     */
+    protected void addFeatures(SemanticFrameSet sentence, Token argument, Token predicate, FeatureSink sink,
+                               FeatureGeneratorProfiler profiler) {
+        for (IndividualFeatureGenerator group : BASE_FEATURES)
+            addFeatures(group, sentence, argument, predicate, sink, profiler);
+    }
 
-        Token ppHead;
-        if (argument.syntacticHeadRelation.equals("PMOD"))
-            ppHead = sentence.getLeftSiblings(sentence.getParent(argument)).getFirst();
-        else
-            ppHead = sentence.getParent(argument);
+    /**
+     * Has an IndividualFeatureGenerator add its features to a sink, measuring it if there is a profiler.
+     *
+     * @param featureGenerator feature generator to add the features of
+     * @param sentence         sentence of predicate and argument
+     * @param argument         argument candidate to generate features for
+     * @param predicate        predicate of argument
+     * @param sink             sink to add features to
+     * @param profiler         profiler measuring this call, or null if it is not measured
+     */
+    protected static void addFeatures(IndividualFeatureGenerator featureGenerator, SemanticFrameSet sentence,
+                                      Token argument, Token predicate, FeatureSink sink,
+                                      FeatureGeneratorProfiler profiler) {
+        if (profiler == null) {
+            featureGenerator.addFeatures(sentence, predicate, argument, sink);
+        } else {
+            FeatureGeneratorProfiler.Measurement measurement = profiler.start(sink);
+            featureGenerator.addFeatures(sentence, predicate, argument, measurement.sink());
+            profiler.stop(featureGenerator.identifier, measurement);
+        }
+    }
 
-        if (ppHead == null)
-            ppHead = Token.emptyToken;
+    /*
+    The base features, in groups that are profiled separately.
+     */
+    private static final IndividualFeatureGenerator LEXICAL_FEATURES = new TemplateFeatureGenerator("base/lexical") {
+        @Override
+        protected void addFeatures(SemanticFrameSet sentence, Token predicate, Token argument, FeatureSink sink) {
+
+            /*
+    		 * Feature 1: argument (and modifier), predicate split lemma, form; pos
+    		 */
+            sink.add(ARG_LEMMA, argument.lemma);
+            sink.add(ARG_FORM, argument.form);
+            sink.add(ARG_POS, argument.pos);
+
+            sink.add(PRED_LEMMA, predicate.lemma);
+            sink.add(PRED_FORM, predicate.form);
+            sink.add(PRED_POS, predicate.pos);
+
+            Token pmod = getPMOD(sentence, argument);
+            if (pmod != null) {
+                sink.add(PMOD_LEMMA, pmod.lemma);
+                sink.add(PMOD_FORM, pmod.form);
+                sink.add(PMOD_POS, pmod.pos);
+            }
 
-        features.add("ppHeadL|" + ppHead.lemma);
-        features.add("ppHeadF|" + ppHead.form);
-        features.add("aL+ppHeadF|" + argument.lemma + "|" + ppHead.form);
+            Token ppHead;
+            if (argument.syntacticHeadRelation.equals("PMOD"))
+                ppHead = sentence.getLeftSiblings(sentence.getParent(argument)).getFirst();
+            else
+                ppHead = sentence.getParent(argument);
 
+            if (ppHead == null)
+                ppHead = Token.emptyToken;
 
-        /*
-        * Feature 2: pos/deprel for predicate children, children of predicate ancestor across VC/IM dependencies
-        */
-        StringBuilder relationFeature = new StringBuilder("predCRel|");
-        StringBuilder posFeature = new StringBuilder("predCPos|");
-        for (Token child : sentence.getChildren(predicate)) {
-            relationFeature.append(child.syntacticHeadRelation).append(" ");
-            posFeature.append(child.pos).append(" ");
+            sink.add(PP_HEAD_LEMMA, ppHead.lemma);
+            sink.add(PP_HEAD_FORM, ppHead.form);
+            sink.begin(ARG_LEMMA_PP_HEAD_FORM).append(argument.lemma).append('|').append(ppHead.form).end();
         }
-        features.add(relationFeature.toString());
-        features.add(posFeature.toString());
-
-        relationFeature = new StringBuilder("vcimRel|");
-        posFeature = new StringBuilder("vcimPos|");
-        Token vcimAncestor = predicate;
-        while (vcimAncestor.syntacticHeadRelation.equals("VC") || vcimAncestor.syntacticHeadRelation.equals("IM"))
-            vcimAncestor = sentence.getParent(vcimAncestor);
-
-        for (Token ancestorChild : sentence.getChildren(vcimAncestor)) {
-            relationFeature.append(" ").append(ancestorChild.syntacticHeadRelation);
-            posFeature.append(" ").append(ancestorChild.pos);
-            if (ancestorChild.equals(argument)) {
-                relationFeature.append("a");
-                posFeature.append("a");
-            } else if (ancestorChild.equals(predicate)) {
-                relationFeature.append("p");
-                posFeature.append("p");
-            }
+    };
+
+    private static final IndividualFeatureGenerator CHILD_FEATURES = new TemplateFeatureGenerator("base/children") {
+        @Override
+        protected void addFeatures(SemanticFrameSet sentence, Token predicate, Token argument, FeatureSink sink) {
+            /*
+            * Feature 2: pos/deprel for predicate children, children of predicate ancestor across VC/IM dependencies
+            */
+            List<Token> predicateChildren = sentence.getChildren(predicate);
+            sink.begin(PRED_CHILD_RELS);
+            for (Token child : predicateChildren)
+                sink.append(child.syntacticHeadRelation).append(' ');
+            sink.end();
+            sink.begin(PRED_CHILD_POS);
+            for (Token child : predicateChildren)
+                sink.append(child.pos).append(' ');
+            sink.end();
+
+            Token vcimAncestor = predicate;
+            while (vcimAncestor.syntacticHeadRelation.equals("VC") || vcimAncestor.syntacticHeadRelation.equals("IM"))
+                vcimAncestor = sentence.getParent(vcimAncestor);
+
+            List<Token> ancestorChildren = sentence.getChildren(vcimAncestor);
+            sink.begin(VCIM_RELS);
+            for (Token ancestorChild : ancestorChildren)
+                appendVcimChild(sink.append(' ').append(ancestorChild.syntacticHeadRelation), ancestorChild,
+                        argument, predicate);
+            sink.end();
+            sink.begin(VCIM_POS);
+            for (Token ancestorChild : ancestorChildren)
+                appendVcimChild(sink.append(' ').append(ancestorChild.pos), ancestorChild, argument, predicate);
+            sink.end();
         }
-        features.add(relationFeature.toString());
-        features.add(posFeature.toString());
-
-
-        /*
-        * Feature 3: dependency path
-        */
-        StringBuilder path = new StringBuilder();
-
-        /*
-        * Ancestor splits the path into two halves:
-        * from the argument to the ancestor, the dependencies go upwards;
-        * from the predicate to the ancestor, the dependencies go downwards
-        */
-        Token ancestor = sentence.getCommonAncestor(argument, predicate);
-
-        Deque<Token> argPath = sentence.ancestorPath(argument, ancestor);
-        Deque<Token> predPath = sentence.ancestorPath(predicate, ancestor);
-
-        argPath.removeLast(); //ancestor is last thing in both pathA and pathB, don't need it
-        predPath.removeLast();
-
-        while (!argPath.isEmpty())    //argPath is (upward) path from argument to ancestor
-            path.append(argPath.removeFirst().syntacticHeadRelation).append("^ ");
-        while (!predPath.isEmpty())    //predPath is (downwards) path from predicate to ancestor
-            path.append(predPath.removeLast().syntacticHeadRelation).append("v ");
-
-        features.add("path|" + path.toString());
-        features.add("pathP|" + argument.pos + " " + path.toString() + predicate.pos);    //with pos tags
-        features.add("pathL|" + argument.lemma + " " + path.toString() + predicate.lemma);    //with lemma tags
-
-        //p.voice + a:p|direction
-        String predicateVoice = sentence.voiceOf(predicate);
-        features.add("pV+apDir|" + predicateVoice + "|" +
-                (predicate.sentenceIndex > argument.sentenceIndex ? "pFirst" : "aFirst"));
-
-        /*
-		 * Feature 4: length of dependency path
-		 */
-        features.add("pathLength|" + (argPath.size() + predPath.size()));
-
-        /*
-           * Feature 5: difference in positions, and binary tokens
-           */
-        int distance = Math.abs(predicate.sentenceIndex - argument.sentenceIndex);
-        features.add("dist|" + distance);
-        features.add(distance == 1 ? "dist=1|t" : "dist=1|f");
-        features.add(distance == 2 ? "dist=2|t" : "dist=2|f");
-        features.add(distance > 2 ? "dist>2|t" : "dist>2|f");
-
-        /*
-           * Feature 6: predicate before or after argument
-           */
-        features.add("predRelPos|" + ((predicate.sentenceIndex < argument.sentenceIndex) ? "before" : "after"));
-
-        /*
-         * other features
-         */
-
-        //is current predicate
-        if (argument.equals(predicate))
-            features.add("isCurPred|" + predicate.lemma);
-        else
-            features.add("isCurPred|nope");
-
-        //predicate voice
-        features.add("pVoice|" + predicateVoice);
+    };
+
+    private static final IndividualFeatureGenerator PATH_FEATURES = new TemplateFeatureGenerator("base/path") {
+        @Override
+        protected void addFeatures(SemanticFrameSet sentence, Token predicate, Token argument, FeatureSink sink) {
+            /*
+            * Feature 3: dependency path
+            */
+            StringBuilder pathBuilder = new StringBuilder();
+
+            /*
+            * Ancestor splits the path into two halves:
+            * from the argument to the ancestor, the dependencies go upwards;
+            * from the predicate to the ancestor, the dependencies go downwards
+            */
+            Token ancestor = sentence.getCommonAncestor(argument, predicate);
+
+            Deque<Token> argPath = sentence.ancestorPath(argument, ancestor);
+            Deque<Token> predPath = sentence.ancestorPath(predicate, ancestor);
+
+            argPath.removeLast(); //ancestor is last thing in both pathA and pathB, don't need it
+            predPath.removeLast();
+
+            while (!argPath.isEmpty())    //argPath is (upward) path from argument to ancestor
+                pathBuilder.append(argPath.removeFirst().syntacticHeadRelation).append("^ ");
+            while (!predPath.isEmpty())    //predPath is (downwards) path from predicate to ancestor
+                pathBuilder.append(predPath.removeLast().syntacticHeadRelation).append("v ");
+            String path = pathBuilder.toString();
+
+            sink.add(PATH, path);
+            sink.begin(PATH_POS).append(argument.pos).append(' ').append(path).append(predicate.pos).end();
+            sink.begin(PATH_LEMMA).append(argument.lemma).append(' ').append(path).append(predicate.lemma).end();
+
+            //p.voice + a:p|direction
+            String predicateVoice = sentence.voiceOf(predicate);
+            sink.begin(PRED_VOICE_DIRECTION).append(predicateVoice).append('|')
+                    .append(predicate.sentenceIndex > argument.sentenceIndex ? "pFirst" : "aFirst").end();
+
+            /*
+    		 * Feature 4: length of dependency path
+    		 */
+            sink.begin(PATH_LENGTH).append(argPath.size() + predPath.size()).end();
+
+            //predicate voice
+            sink.add(PRED_VOICE, predicateVoice);
+        }
+    };
+
+    private static final IndividualFeatureGenerator POSITION_FEATURES = new TemplateFeatureGenerator("base/position") {
+        @Override
+        protected void addFeatures(SemanticFrameSet sentence, Token predicate, Token argument, FeatureSink sink) {
+            /*
+               * Feature 5: difference in positions, and binary tokens
+               */
+            int distance = Math.abs(predicate.sentenceIndex - argument.sentenceIndex);
+            sink.begin(DISTANCE).append(distance).end();
+            sink.add(DISTANCE_1, distance == 1 ? "t" : "f");
+            sink.add(DISTANCE_2, distance == 2 ? "t" : "f");
+            sink.add(DISTANCE_OVER_2, distance > 2 ? "t" : "f");
+
+            /*
+               * Feature 6: predicate before or after argument
+               */
+            sink.add(PRED_RELATIVE_POSITION, (predicate.sentenceIndex < argument.sentenceIndex) ? "before" : "after");
+
+            //is current predicate
+            sink.add(IS_CURRENT_PREDICATE, argument.equals(predicate) ? predicate.lemma : "nope");
+        }
+    };
 
-        return features;
+    private static final IndividualFeatureGenerator[] BASE_FEATURES =
+            {LEXICAL_FEATURES, CHILD_FEATURES, PATH_FEATURES, POSITION_FEATURES};
+
+    private static void appendVcimChild(FeatureSink sink, Token ancestorChild, Token argument, Token predicate) {
+        if (ancestorChild.equals(argument))
+            sink.append('a');
+        else if (ancestorChild.equals(predicate))
+            sink.append('p');
     }
 
     private static Token getPMOD(TokenSentence sentence, Token argument) {
@@ -254,23 +401,72 @@ public class ArgumentFeatureGenerator implements Serializable {
      * <p/>
      * This generates an internal list of features that are not ignored, based on the set of training frames--
      * the set of training frames should be the same set used to train the argument classifier.
+     * <p/>
+     * Features are counted in bounded memory, in parallel, by a {@link FeatureSetReducer};
+     * to reduce the predicate feature generator in the same passes, use one directly.
      *
      * @param trainingSet training set used to train
      */
-    public void reduceFeatureSet(Collection<SemanticFrameSet> trainingSet) {
-        Counter<String> featureCounter = new ClassicCounter<String>();
-
-        for (SemanticFrameSet frameSet : trainingSet)
-            for (Token predicate : frameSet.getPredicateList())
-                for (Token argument : ArgumentClassifier.argumentCandidates(frameSet, predicate))
-                    for (String s : featuresOf(frameSet, argument, predicate))
-                        if (!isStructuralFeature(s))
-                            featureCounter.incrementCount(s);
-
-        allowedNonStructuralFeatures = new HashSet<String>();
-        for (String s : featureCounter.keySet())
-            if (featureCounter.getCount(s) >= FEATURE_COUNT_THRESHOLD)
-                allowedNonStructuralFeatures.add(s);
+    public void reduceFeatureSet(Iterable<SemanticFrameSet> trainingSet) {
+        new FeatureSetReducer(this, null, FEATURE_COUNT_THRESHOLD).reduce(trainingSet);
+    }
+
+    /**
+     * Sets the allowed non-structural features, as found by reduceFeatureSet() or a {@link FeatureSetReducer}.
+     *
+     * @param allowedFeatures set of allowed features
+     */
+    @Override
+    public void setAllowedNonStructuralFeatures(Set<String> allowedFeatures) {
+        allowedNonStructuralFeatures = new HashSet<String>(allowedFeatures);
+        featureSetReduced = true;
+        allowList = null;
+    }
+
+    /**
+     * Whether or not the allowed non-structural features have been found from a training set.
+     * If so, the features generated already leave out infrequent features, so there is no
+     * need to apply a feature count threshold to the data generated again.
+     *
+     * @return true if reduceFeatureSet() or setAllowedNonStructuralFeatures() has been called
+     */
+    public boolean isFeatureSetReduced() {
+        return featureSetReduced;
+    }
+
+    /**
+     * Generates every feature of each argument candidate of each predicate of a sentence,
+     * without leaving out the features that are not allowed.
+     *
+     * @param sentence sentence to generate features for
+     * @param counter  counter to add the features of each argument candidate to
+     */
+    @Override
+    public void countFeatures(SemanticFrameSet sentence, FeatureCounter counter) {
+        for (Token predicate : sentence.getPredicateList())
+            for (Token argument : ArgumentClassifier.argumentCandidates(sentence, predicate))
+                generateFeatures(sentence, argument, predicate, counter.nextInput());
+    }
+
+    /**
+     * Structural features are allowed separately, so only non-structural features are counted.
+     *
+     * @param key key of the feature
+     * @return true if the feature is non-structural
+     */
+    @Override
+    public boolean isCounted(long key) {
+        return !FeatureTemplates.isStructural(FeatureTemplates.templateOf(key));
+    }
+
+    /**
+     * Each feature is counted once for each argument candidate it appears for.
+     *
+     * @return true
+     */
+    @Override
+    public boolean countsOncePerInput() {
+        return true;
     }
 
     /**
@@ -290,4 +486,35 @@ public class ArgumentFeatureGenerator implements Serializable {
     public void setAllowStructuralFeatures(boolean allow) {
         allowStructuralFeatures = allow;
     }
+
+    /**
+     * Whether or not to front the set of allowed features with a Bloom filter. This speeds up
+     * rejecting features that are not allowed, when many of the generated features are not,
+     * at the cost of a little memory; the features allowed are the same either way.
+     *
+     * @param bloomFilter true to use a Bloom filter, false otherwise
+     */
+    public void setAllowListBloomFilter(boolean bloomFilter) {
+        allowListBloomFilter = bloomFilter;
+        allowList = null;
+    }
+
+    /**
+     * Sets a profiler to measure the cost of each group of features with. Profilers only measure
+     * some of the calls, so one can be left on for a while; it is not saved with the generator.
+     *
+     * @param profiler profiler to use, or null to stop profiling
+     */
+    public void setProfiler(FeatureGeneratorProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Returns the profiler measuring the cost of each group of features.
+     *
+     * @return profiler, or null if not profiling
+     */
+    public FeatureGeneratorProfiler getProfiler() {
+        return profiler;
+    }
 }
@@ -1,8 +1,9 @@
 package spinach.argumentclassifier.featuregen;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import spinach.argumentclassifier.ArgumentClassifier;
+import spinach.classifier.FeatureSink;
+import spinach.classifier.FeatureTemplates;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
 
@@ -22,25 +23,64 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
     private final Set<IndividualFeatureGenerator> featureGeneratorSet =
             new HashSet<IndividualFeatureGenerator>();
 
-    private static final IndividualFeatureGenerator EXIST_SEM_DPREL = new IndividualFeatureGenerator("existSemDprel") {
+    private static final int EXIST_A0 = FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "esdA0|");
+    private static final int EXIST_A1 = FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "esdA1|");
+    private static final int EXIST_A2 = FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "esdA2|");
+    private static final int EXIST_CROSS_TEMPLATE = FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "existX|");
+    private static final int PREVIOUS_ARG_CLASS_TEMPLATE =
+            FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "prevAC|");
+    private static final int LINE_PATH_FORMS = FeatureTemplates.register("linePathF|");
+    private static final int LINE_PATH_LEMMAS = FeatureTemplates.register("linePathL|");
+    private static final int LINE_PATH_RELS = FeatureTemplates.register("linePathD|");
+    private static final int TREE_REL_TEMPLATE = FeatureTemplates.register("treeRel|");
+    private static final int ARG_HI_NOUN_FORM = FeatureTemplates.register("argHiNF|");
+    private static final int ARG_HI_NOUN_LEMMA = FeatureTemplates.register("argHiNL|");
+    private static final int ARG_HI_NOUN_POS = FeatureTemplates.register("argHiNP|");
+    private static final int ARG_LO_NOUN_FORM = FeatureTemplates.register("argLoNF|");
+    private static final int ARG_LO_NOUN_LEMMA = FeatureTemplates.register("argLoNL|");
+    private static final int ARG_LO_NOUN_POS = FeatureTemplates.register("argLoNP|");
+    private static final int ARG_HI_VERB_FORM = FeatureTemplates.register("argHiVF|");
+    private static final int ARG_HI_VERB_LEMMA = FeatureTemplates.register("argHiVL|");
+    private static final int ARG_HI_VERB_POS = FeatureTemplates.register("argHiVP|");
+    private static final int ARG_LO_VERB_FORM = FeatureTemplates.register("argLoVF|");
+    private static final int ARG_LO_VERB_LEMMA = FeatureTemplates.register("argLoVL|");
+    private static final int ARG_LO_VERB_POS = FeatureTemplates.register("argLoVP|");
+    private static final int ARG_IS_LEAF = FeatureTemplates.register("argLeaf");
+    private static final int ARG_IS_NOT_LEAF = FeatureTemplates.register("argNotLeaf");
+    private static final int PATH_LEMMAS = FeatureTemplates.register("PAPathLs|");
+    private static final int ARG_LEMMA_PRED_LEMMA = FeatureTemplates.register("aL+pL|");
+    private static final int ARG_LEMMA_REL_HEAD_LEMMA = FeatureTemplates.register("aL+aD+ahL|");
+    private static final int PRED_REL = FeatureTemplates.register("pD|");
+    private static final int OTHER_ARGS_LEFT = FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "oArgsL|");
+    private static final int OTHER_ARGS_RIGHT = FeatureTemplates.register(STRUCTURAL_FEATURE_PREFIX + "oArgsR|");
+
+    /*
+    Models save the enabled feature generators below, which are looked up by class name and
+    serialVersionUID; each pins the UID it had before it built its features from templates,
+    so older models still load. They must also stay in this order, which sets their class names.
+     */
+    private static final IndividualFeatureGenerator EXIST_SEM_DPREL = new TemplateFeatureGenerator("existSemDprel") {
+        private static final long serialVersionUID = 9157557610228386346L;
 
         @Override
-        protected Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
-            Set<String> features = new HashSet<String>();
-
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
             Collection<String> encounteredLabels = frameSet.argumentsOf(predicate).values();
 
-            features.add(STRUCTURAL_FEATURE_PREFIX + (encounteredLabels.contains("A0") ? "esdA0|t" : "esdA0|f"));
-            features.add(STRUCTURAL_FEATURE_PREFIX + (encounteredLabels.contains("A1") ? "esdA1|t" : "esdA1|f"));
-            features.add(STRUCTURAL_FEATURE_PREFIX + (encounteredLabels.contains("A2") ? "esdA2|t" : "esdA2|f"));
-
-            return features;
+            sink.add(EXIST_A0, encounteredLabels.contains("A0") ? "t" : "f");
+            sink.add(EXIST_A1, encounteredLabels.contains("A1") ? "t" : "f");
+            sink.add(EXIST_A2, encounteredLabels.contains("A2") ? "t" : "f");
         }
     };
 
-    private static final IndividualFeatureGenerator EXIST_CROSS = new SingularFeatureGenerator("existCross") {
+    private static final IndividualFeatureGenerator EXIST_CROSS = new TemplateFeatureGenerator("existCross") {
+        private static final long serialVersionUID = 1675032481046968265L;
+
         @Override
-        protected String featureOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
+            sink.add(EXIST_CROSS_TEMPLATE, existsCross(frameSet, predicate, argument) ? "yes" : "no");
+        }
+
+        private boolean existsCross(SemanticFrameSet frameSet, Token predicate, Token argument) {
             for (Token otherPredicate : frameSet.getPredicateList()) {
                 if (otherPredicate.equals(predicate) || otherPredicate.equals(argument))
                     continue;
@@ -48,11 +88,11 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
                     if (otherArg.equals(predicate) || otherArg.equals(argument))
                         continue;
                     if (existCross(predicate, argument, otherPredicate, otherArg))
-                        return STRUCTURAL_FEATURE_PREFIX + "existX|yes";
+                        return true;
                 }
             }
 
-            return STRUCTURAL_FEATURE_PREFIX + "existX|no";
+            return false;
         }
 
         private boolean existCross(Token predicate1, Token argument1,
@@ -68,10 +108,12 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
     };
 
     private static final IndividualFeatureGenerator PREVIOUS_ARG_CLASS =
-            new SingularFeatureGenerator("previousArgClass") {
+            new TemplateFeatureGenerator("previousArgClass") {
+                private static final long serialVersionUID = -6507582021256281076L;
 
                 @Override
-                protected String featureOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+                protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument,
+                                           FeatureSink sink) {
 
                     int mostRecentArgumentIndex = -1;
                     String mostRecentLabel = null;
@@ -84,21 +126,17 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
                         }
                     }
 
-                    if (mostRecentLabel == null)
-                        return STRUCTURAL_FEATURE_PREFIX + "prevAC|" + ArgumentClassifier.NIL_LABEL;
-                    else
-                        return STRUCTURAL_FEATURE_PREFIX + "prevAC|" + mostRecentLabel;
+                    sink.add(PREVIOUS_ARG_CLASS_TEMPLATE,
+                            mostRecentLabel == null ? ArgumentClassifier.NIL_LABEL : mostRecentLabel);
                 }
 
             };
 
-    private static final IndividualFeatureGenerator LINE_PATH = new IndividualFeatureGenerator("linePath") {
-        @Override
-        protected Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
-            StringBuilder linePathF = new StringBuilder("linePathF|");
-            StringBuilder linePathL = new StringBuilder("linePathL|");
-            StringBuilder linePathD = new StringBuilder("linePathD|");
+    private static final IndividualFeatureGenerator LINE_PATH = new TemplateFeatureGenerator("linePath") {
+        private static final long serialVersionUID = 3482225673309221812L;
 
+        @Override
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
             Token start;
             Token end;
 
@@ -110,46 +148,58 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
                 end = predicate;
             }
 
-            for (Token t = start; t.comesBefore(end);
-                 t = frameSet.tokenAt(t.sentenceIndex + 1)) {
-                linePathF.append(t.form).append(" ");
-                linePathL.append(t.lemma).append(" ");
-                linePathD.append(t.syntacticHeadRelation).append(" ");
-            }
+            sink.begin(LINE_PATH_FORMS);
+            for (Token t = start; t.comesBefore(end); t = frameSet.tokenAt(t.sentenceIndex + 1))
+                sink.append(t.form).append(' ');
+            sink.end();
 
-            return ImmutableSet.of(linePathF.toString(),
-                    linePathL.toString(),
-                    linePathD.toString());
+            sink.begin(LINE_PATH_LEMMAS);
+            for (Token t = start; t.comesBefore(end); t = frameSet.tokenAt(t.sentenceIndex + 1))
+                sink.append(t.lemma).append(' ');
+            sink.end();
+
+            sink.begin(LINE_PATH_RELS);
+            for (Token t = start; t.comesBefore(end); t = frameSet.tokenAt(t.sentenceIndex + 1))
+                sink.append(t.syntacticHeadRelation).append(' ');
+            sink.end();
         }
     };
 
-    private static final IndividualFeatureGenerator TREE_REL = new SingularFeatureGenerator("dpTreeRelation") {
+    private static final IndividualFeatureGenerator TREE_REL = new TemplateFeatureGenerator("dpTreeRelation") {
+        private static final long serialVersionUID = -2448612175871755975L;
+
         @Override
-        protected String featureOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
+            sink.add(TREE_REL_TEMPLATE, treeRelation(frameSet, predicate, argument));
+        }
+
+        private String treeRelation(SemanticFrameSet frameSet, Token predicate, Token argument) {
             if (argument.equals(frameSet.getParent(predicate)))
-                return "treeRel|PChild";
+                return "PChild";
 
             if (predicate.equals(frameSet.getParent(argument)))
-                return "treeRel|AChild";
+                return "AChild";
 
             for (Token t = frameSet.getParent(argument); t != null; t = frameSet.getParent(t))
                 if (predicate.equals(t))
-                    return "treeRel|ADesc";
+                    return "ADesc";
 
             for (Token t = frameSet.getParent(predicate); t != null; t = frameSet.getParent(t))
                 if (argument.equals(t))
-                    return "treeRel|PDesc";
+                    return "PDesc";
 
             if (frameSet.getSiblings(predicate).contains(argument))
-                return "treeRel|siblings";
+                return "siblings";
 
-            return "treeRel|none";
+            return "none";
         }
     };
 
-    private static final IndividualFeatureGenerator HILO_SUPPORT = new IndividualFeatureGenerator("hi/lo support") {
+    private static final IndividualFeatureGenerator HILO_SUPPORT = new TemplateFeatureGenerator("hi/lo support") {
+        private static final long serialVersionUID = -1393390224119673468L;
+
         @Override
-        protected Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
             Token hiVerb = Token.emptyToken;
             Token loVerb = Token.emptyToken;
             Token hiNoun = Token.emptyToken;
@@ -169,61 +219,64 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
                 }
             }
 
-            return ImmutableSet.of(
-                    "argHiNF|" + hiNoun.form,
-                    "argHiNL|" + hiNoun.lemma,
-                    "argHiNP|" + hiNoun.pos,
-                    "argLoNF|" + loNoun.form,
-                    "argLoNL|" + loNoun.lemma,
-                    "argLoNP|" + loNoun.pos,
-                    "argHiVF|" + hiVerb.form,
-                    "argHiVL|" + hiVerb.lemma,
-                    "argHiVP|" + hiVerb.pos,
-                    "argLoVF|" + loVerb.form,
-                    "argLoVL|" + loVerb.lemma,
-                    "argLoVP|" + loVerb.pos
-            );
+            sink.add(ARG_HI_NOUN_FORM, hiNoun.form);
+            sink.add(ARG_HI_NOUN_LEMMA, hiNoun.lemma);
+            sink.add(ARG_HI_NOUN_POS, hiNoun.pos);
+            sink.add(ARG_LO_NOUN_FORM, loNoun.form);
+            sink.add(ARG_LO_NOUN_LEMMA, loNoun.lemma);
+            sink.add(ARG_LO_NOUN_POS, loNoun.pos);
+            sink.add(ARG_HI_VERB_FORM, hiVerb.form);
+            sink.add(ARG_HI_VERB_LEMMA, hiVerb.lemma);
+            sink.add(ARG_HI_VERB_POS, hiVerb.pos);
+            sink.add(ARG_LO_VERB_FORM, loVerb.form);
+            sink.add(ARG_LO_VERB_LEMMA, loVerb.lemma);
+            sink.add(ARG_LO_VERB_POS, loVerb.pos);
         }
     };
 
-    private static final IndividualFeatureGenerator ARG_LEAF = new SingularFeatureGenerator("isArgLeaf") {
+    private static final IndividualFeatureGenerator ARG_LEAF = new TemplateFeatureGenerator("isArgLeaf") {
+        private static final long serialVersionUID = -4372328818909454527L;
+
         @Override
-        protected String featureOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
-            return frameSet.getChildren(argument).isEmpty() ? "argLeaf" : "argNotLeaf";
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
+            sink.add(frameSet.getChildren(argument).isEmpty() ? ARG_IS_LEAF : ARG_IS_NOT_LEAF);
         }
     };
 
-    private static final IndividualFeatureGenerator PATH_LEMMA = new SingularFeatureGenerator("dpPathLemma") {
-        @Override
-        protected String featureOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
-            StringBuilder s = new StringBuilder("PAPathLs|");
+    private static final IndividualFeatureGenerator PATH_LEMMA = new TemplateFeatureGenerator("dpPathLemma") {
+        private static final long serialVersionUID = 4771073504550795114L;
 
+        @Override
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
+            sink.begin(PATH_LEMMAS);
             for (Token t : frameSet.syntacticPath(predicate, argument))
-                s.append(t.lemma).append(" ");
-
-            return s.toString();
+                sink.append(t.lemma).append(' ');
+            sink.end();
         }
     };
 
-    private static final IndividualFeatureGenerator T9COMBO = new IndividualFeatureGenerator("T9Combo") {
+    private static final IndividualFeatureGenerator T9COMBO = new TemplateFeatureGenerator("T9Combo") {
+        private static final long serialVersionUID = 8432414465163997026L;
+
         @Override
-        protected Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
             Token argHead = frameSet.getParent(argument);
 
             if (argHead == null)
                 argHead = Token.emptyToken;
 
-            return ImmutableSet.of(
-                    "aL+pL|" + argument.lemma + " " + predicate.lemma,
-                    "aL+aD+ahL|" + argument.lemma + " " + argument.syntacticHeadRelation + " " + argHead.lemma,
-                    "pD|" + predicate.syntacticHeadRelation
-            );
+            sink.begin(ARG_LEMMA_PRED_LEMMA).append(argument.lemma).append(' ').append(predicate.lemma).end();
+            sink.begin(ARG_LEMMA_REL_HEAD_LEMMA).append(argument.lemma).append(' ')
+                    .append(argument.syntacticHeadRelation).append(' ').append(argHead.lemma).end();
+            sink.add(PRED_REL, predicate.syntacticHeadRelation);
         }
     };
 
-    private static final IndividualFeatureGenerator LR_ARGNUM = new IndividualFeatureGenerator("leftRightArgNum") {
+    private static final IndividualFeatureGenerator LR_ARGNUM = new TemplateFeatureGenerator("leftRightArgNum") {
+        private static final long serialVersionUID = 3762234857234195477L;
+
         @Override
-        protected Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
             int toLeft = 0;
             int toRight = 0;
 
@@ -232,14 +285,16 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
                     toLeft++;
                 else
                     toRight++;
-            return ImmutableSet.of(STRUCTURAL_FEATURE_PREFIX + "oArgsL|" + toLeft,
-                    STRUCTURAL_FEATURE_PREFIX + "oArgsR|" + toRight);
+            sink.begin(OTHER_ARGS_LEFT).append(toLeft).end();
+            sink.begin(OTHER_ARGS_RIGHT).append(toRight).end();
         }
     };
 
-    private static final IndividualFeatureGenerator LR_CARGNUM = new IndividualFeatureGenerator("LRCArgNum") {
+    private static final IndividualFeatureGenerator LR_CARGNUM = new TemplateFeatureGenerator("LRCArgNum") {
+        private static final long serialVersionUID = 2757123304712385785L;
+
         @Override
-        protected Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
             int toLeft = 0;
             int toRight = 0;
 
@@ -252,8 +307,8 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
                 else
                     toRight++;
             }
-            return ImmutableSet.of(STRUCTURAL_FEATURE_PREFIX + "oArgsL|" + toLeft,
-                    STRUCTURAL_FEATURE_PREFIX + "oArgsR|" + toRight);
+            sink.begin(OTHER_ARGS_LEFT).append(toLeft).end();
+            sink.begin(OTHER_ARGS_RIGHT).append(toRight).end();
         }
     };
 
@@ -267,19 +322,12 @@ public class ExtensibleFeatureGenerator extends ArgumentFeatureGenerator {
     }
 
     @Override
-    protected Collection<String> featuresOf(SemanticFrameSet sentence,
-                                            Token argument, Token predicate) {
-
-        Collection<String> features = super.featuresOf(sentence, argument, predicate);
-
-        for (IndividualFeatureGenerator featureGenerator : enabledFeatures) {
-            Collection<String> newFeatures = featureGenerator.
-                    featuresOf(sentence, predicate, argument);
-            if (newFeatures != null)
-                features.addAll(newFeatures);
-        }
+    protected void addFeatures(SemanticFrameSet sentence, Token argument, Token predicate, FeatureSink sink,
+                               FeatureGeneratorProfiler profiler) {
+        super.addFeatures(sentence, argument, predicate, sink, profiler);
 
-        return features;
+        for (IndividualFeatureGenerator featureGenerator : enabledFeatures)
+            addFeatures(featureGenerator, sentence, argument, predicate, sink, profiler);
     }
 
     /**
@@ -0,0 +1,273 @@
+package spinach.argumentclassifier.featuregen;
+
+import spinach.classifier.FeatureSink;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how much each part of argument feature generation costs: each IndividualFeatureGenerator
+ * of an {@link ExtensibleFeatureGenerator}, and each group of the base features of an
+ * {@link ArgumentFeatureGenerator}. For each, it records the number of calls, the time spent,
+ * the number of features generated (before any are left out), and, where the JVM supports it,
+ * the bytes allocated.
+ * <p/>
+ * Each feature generation call is measured with a probability of one in the sample interval, so that
+ * a profiler can be left on for a sample of real traffic; the counts reported are those of the measured calls.
+ * A profiler may be shared by any number of threads.
+ * <p/>
+ * Counting features and allocated bytes takes time of its own, more of it for parts that generate
+ * more features, so a profiler whose times are to be compared should be made to measure time only.
+ *
+ * @see ArgumentFeatureGenerator#setProfiler(FeatureGeneratorProfiler)
+ */
+public class FeatureGeneratorProfiler {
+
+    private static class Stats {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong nanos = new AtomicLong();
+        final AtomicLong features = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+    }
+
+    /**
+     * A measurement of one part of feature generation, in progress.
+     */
+    static final class Measurement {
+        private final long startNanos;
+        private final long startBytes;
+        private final FeatureSink sink;
+        private final CountingSink countingSink;
+
+        private Measurement(long startNanos, long startBytes, FeatureSink sink, CountingSink countingSink) {
+            this.startNanos = startNanos;
+            this.startBytes = startBytes;
+            this.sink = sink;
+            this.countingSink = countingSink;
+        }
+
+        /**
+         * Returns the sink to generate features to while measuring, which counts them
+         * unless only time is measured.
+         *
+         * @return sink to use in place of the original
+         */
+        FeatureSink sink() {
+            return countingSink == null ? sink : countingSink;
+        }
+    }
+
+    /*
+    Passes features on to another sink, counting them.
+     */
+    private static final class CountingSink extends FeatureSink {
+        private final FeatureSink sink;
+        private long count;
+
+        CountingSink(FeatureSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void add(String feature) {
+            count++;
+            sink.add(feature);
+        }
+
+        @Override
+        public FeatureSink begin(int template) {
+            sink.begin(template);
+            return this;
+        }
+
+        @Override
+        public FeatureSink append(CharSequence part) {
+            sink.append(part);
+            return this;
+        }
+
+        @Override
+        public FeatureSink append(char c) {
+            sink.append(c);
+            return this;
+        }
+
+        @Override
+        public FeatureSink append(int i) {
+            sink.append(i);
+            return this;
+        }
+
+        @Override
+        public void end() {
+            count++;
+            sink.end();
+        }
+    }
+
+    private final int sampleInterval;
+    private final boolean timeOnly;
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+    private final com.sun.management.ThreadMXBean allocationBean;
+
+    /**
+     * Creates a profiler that measures time, features, and, where it can, allocated bytes.
+     *
+     * @param sampleInterval measure one in this many calls, on average; 1 measures every call
+     */
+    public FeatureGeneratorProfiler(int sampleInterval) {
+        this(sampleInterval, false);
+    }
+
+    /**
+     * Creates a profiler.
+     *
+     * @param sampleInterval measure one in this many calls, on average; 1 measures every call
+     * @param timeOnly       true to measure only time, without counting features or allocated bytes
+     */
+    public FeatureGeneratorProfiler(int sampleInterval, boolean timeOnly) {
+        if (sampleInterval < 1)
+            throw new IllegalArgumentException("Sample interval must be positive");
+        this.sampleInterval = sampleInterval;
+        this.timeOnly = timeOnly;
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean bean = null;
+        if (!timeOnly && threadBean instanceof com.sun.management.ThreadMXBean) {
+            bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported() && !bean.isThreadAllocatedMemoryEnabled())
+                bean.setThreadAllocatedMemoryEnabled(true);
+            if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled())
+                bean = null;
+        }
+        allocationBean = bean;
+    }
+
+    /**
+     * Decides whether or not to measure the next call, at random, so that threads share no state to decide.
+     *
+     * @return true if the call should be measured
+     */
+    boolean sample() {
+        return sampleInterval == 1 || ThreadLocalRandom.current().nextInt(sampleInterval) == 0;
+    }
+
+    /**
+     * Starts measuring one part of feature generation.
+     *
+     * @param sink sink the features are generated to
+     * @return the measurement, whose sink should be generated to instead
+     */
+    Measurement start(FeatureSink sink) {
+        CountingSink countingSink = timeOnly ? null : new CountingSink(sink);
+        long startBytes = allocatedBytes();
+        return new Measurement(System.nanoTime(), startBytes, sink, countingSink);
+    }
+
+    /**
+     * Finishes measuring one part of feature generation.
+     *
+     * @param name        name of the part
+     * @param measurement measurement started for it
+     */
+    void stop(String name, Measurement measurement) {
+        long nanos = System.nanoTime() - measurement.startNanos;
+        long bytes = allocatedBytes() - measurement.startBytes;
+
+        Stats s = stats.get(name);
+        if (s == null) {
+            Stats newStats = new Stats();
+            s = stats.putIfAbsent(name, newStats);
+            if (s == null)
+                s = newStats;
+        }
+
+        s.calls.incrementAndGet();
+        s.nanos.addAndGet(nanos);
+        if (measurement.countingSink != null)
+            s.features.addAndGet(measurement.countingSink.count);
+        s.bytes.addAndGet(bytes);
+    }
+
+    private long allocatedBytes() {
+        return allocationBean == null ? 0 : allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Whether or not allocated bytes are measured; this depends on the JVM, and on whether only time is measured.
+     *
+     * @return true if allocations are measured
+     */
+    public boolean measuresAllocations() {
+        return allocationBean != null;
+    }
+
+    /**
+     * Returns the names of the parts measured so far.
+     *
+     * @return names of measured parts
+     */
+    public Set<String> parts() {
+        return Collections.unmodifiableSet(stats.keySet());
+    }
+
+    /**
+     * Returns the average time a part of feature generation took per measured call.
+     *
+     * @param part name of the part
+     * @return average nanoseconds per call, or 0 if the part has not been measured
+     */
+    public double meanNanos(String part) {
+        Stats s = stats.get(part);
+        if (s == null || s.calls.get() == 0)
+            return 0;
+        return (double) s.nanos.get() / s.calls.get();
+    }
+
+    /**
+     * Forgets everything measured so far.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Prints a report of everything measured so far, most expensive part first:
+     * for each part, the number of measured calls, the total and average time,
+     * the average number of features, the average bytes allocated, and its share of the time.
+     *
+     * @param out stream to print to
+     */
+    public void printReport(PrintStream out) {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<Map.Entry<String, Stats>>(stats.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Stats>>() {
+            @Override
+            public int compare(Map.Entry<String, Stats> e1, Map.Entry<String, Stats> e2) {
+                return Long.valueOf(e2.getValue().nanos.get()).compareTo(e1.getValue().nanos.get());
+            }
+        });
+
+        long totalNanos = 0;
+        for (Map.Entry<String, Stats> entry : entries)
+            totalNanos += entry.getValue().nanos.get();
+
+        out.format("Feature generation profile (1 in %d calls measured)%n", sampleInterval);
+        out.format("%-24s %10s %12s %10s %10s %12s %7s%n",
+                "part", "calls", "total ms", "ns/call", "feats/call", "bytes/call", "time %");
+        for (Map.Entry<String, Stats> entry : entries) {
+            Stats s = entry.getValue();
+            long calls = Math.max(1, s.calls.get());
+            out.format("%-24s %10d %12.1f %10d %10s %12s %6.1f%%%n", entry.getKey(), s.calls.get(),
+                    s.nanos.get() / 1e6, s.nanos.get() / calls,
+                    timeOnly ? "n/a" : String.format("%.1f", (double) s.features.get() / calls),
+                    allocationBean == null ? "n/a" : String.valueOf(s.bytes.get() / calls),
+                    totalNanos == 0 ? 0 : 100.0 * s.nanos.get() / totalNanos);
+        }
+    }
+}
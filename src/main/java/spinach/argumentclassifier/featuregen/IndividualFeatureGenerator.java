@@ -1,5 +1,6 @@
 package spinach.argumentclassifier.featuregen;
 
+import spinach.classifier.FeatureSink;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
 
@@ -12,6 +13,8 @@ import java.util.Collection;
  */
 public abstract class IndividualFeatureGenerator implements Serializable {
 
+    private static final long serialVersionUID = 5174865331028599984L;
+
     /**
      * Instantiates a new IndividualFeatureGenerator.
      *
@@ -31,6 +34,23 @@ public abstract class IndividualFeatureGenerator implements Serializable {
      */
     protected abstract Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument);
 
+    /**
+     * Generates the features for a certain sentence, predicate and argument, adding each to a sink.
+     * By default, this adds each of the features of featuresOf() whole; generators that can
+     * build their features from templates (see {@link TemplateFeatureGenerator}) avoid building strings.
+     *
+     * @param frameSet  sentence with partially parsed semantic data
+     * @param predicate predicate of the sentence
+     * @param argument  argument of the predicate
+     * @param sink      sink to add features to
+     */
+    protected void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument, FeatureSink sink) {
+        Collection<String> features = featuresOf(frameSet, predicate, argument);
+        if (features != null)
+            for (String feature : features)
+                sink.add(feature);
+    }
+
     public final String identifier;
 
     public boolean equals(Object o) {
@@ -0,0 +1,36 @@
+package spinach.argumentclassifier.featuregen;
+
+import spinach.classifier.FeatureNameSink;
+import spinach.classifier.FeatureSink;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * IndividualFeatureGenerator that builds its features from templates registered with
+ * {@link spinach.classifier.FeatureTemplates}, so that their keys can be computed
+ * without building their names.
+ */
+public abstract class TemplateFeatureGenerator extends IndividualFeatureGenerator {
+    /**
+     * Instantiates a new TemplateFeatureGenerator.
+     *
+     * @param identifier string that uniquely identifies this IndividualFeatureGenerator
+     */
+    protected TemplateFeatureGenerator(String identifier) {
+        super(identifier);
+    }
+
+    @Override
+    protected final Collection<String> featuresOf(SemanticFrameSet frameSet, Token predicate, Token argument) {
+        Collection<String> features = new HashSet<String>();
+        addFeatures(frameSet, predicate, argument, new FeatureNameSink(features));
+        return features;
+    }
+
+    @Override
+    protected abstract void addFeatures(SemanticFrameSet frameSet, Token predicate, Token argument,
+                                        FeatureSink sink);
+}
@@ -0,0 +1,97 @@
+package spinach.classifier;
+
+/**
+ * A count-min sketch of how many times each feature key (see {@link FeatureTemplates})
+ * has been seen, in a fixed amount of memory no matter how many keys there are.
+ * An estimated count is never less than the true count, but may be more, when other keys
+ * share all of a key's counters. Counts are only kept up to some maximum, since the sketch
+ * is only used to tell whether keys have been seen some number of times; this lets each
+ * counter fit in a byte. Counters are updated conservatively (only those at the key's
+ * current estimate are raised), which keeps estimates closer to the true counts.
+ * <p/>
+ * Not thread safe; separate sketches can be kept by separate threads and then merged.
+ */
+public class CountMinSketch {
+
+    /**
+     * Largest maximum count a sketch can keep.
+     */
+    public static final int MAX_COUNT_LIMIT = 127;
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int maxCount;
+
+    /**
+     * Creates an empty sketch, taking up depth * width bytes.
+     *
+     * @param depth    number of rows of counters; more rows give closer estimates
+     * @param width    number of counters in each row, a power of two
+     * @param maxCount largest count kept, at most 127; larger counts are estimated as this
+     */
+    public CountMinSketch(int depth, int width, int maxCount) {
+        if (depth < 1 || width < 1 || Integer.bitCount(width) != 1)
+            throw new IllegalArgumentException("Depth must be positive and width a power of two");
+        if (maxCount < 1 || maxCount > MAX_COUNT_LIMIT)
+            throw new IllegalArgumentException("Maximum count must be between 1 and " + MAX_COUNT_LIMIT);
+
+        counters = new byte[depth][width];
+        mask = width - 1;
+        this.maxCount = maxCount;
+    }
+
+    private static int slotOf(long key, int row, int mask) {
+        long h = key + row * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+
+    /**
+     * Counts one more occurrence of a key.
+     *
+     * @param key key seen
+     */
+    public void add(long key) {
+        int estimate = estimate(key);
+        if (estimate >= maxCount)
+            return;
+
+        for (int row = 0; row < counters.length; row++) {
+            int slot = slotOf(key, row, mask);
+            if (counters[row][slot] == estimate)
+                counters[row][slot] = (byte) (estimate + 1);
+        }
+    }
+
+    /**
+     * Estimates the number of times a key has been seen.
+     *
+     * @param key key to look up
+     * @return an upper bound on the number of occurrences, capped at the maximum count
+     */
+    public int estimate(long key) {
+        int estimate = maxCount;
+        for (int row = 0; row < counters.length; row++)
+            estimate = Math.min(estimate, counters[row][slotOf(key, row, mask)]);
+        return estimate;
+    }
+
+    /**
+     * Adds the counts of another sketch of the same shape to this one, as if this sketch
+     * had also seen every key the other did.
+     *
+     * @param other sketch to merge in
+     */
+    public void merge(CountMinSketch other) {
+        if (other.counters.length != counters.length || other.mask != mask || other.maxCount != maxCount)
+            throw new IllegalArgumentException("Sketches have different shapes");
+
+        for (int row = 0; row < counters.length; row++)
+            for (int slot = 0; slot <= mask; slot++)
+                counters[row][slot] = (byte) Math.min(maxCount, counters[row][slot] + other.counters[row][slot]);
+    }
+}
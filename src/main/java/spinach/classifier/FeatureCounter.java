@@ -0,0 +1,15 @@
+package spinach.classifier;
+
+/**
+ * Receives the features of the inputs of a sentence, for a {@link FeatureSetReducer} to count.
+ */
+public interface FeatureCounter {
+
+    /**
+     * Starts the features of the next input (a token, or an argument candidate of a predicate).
+     * The sink returned is only valid until this is called again.
+     *
+     * @return sink to add the input's features to
+     */
+    FeatureSink nextInput();
+}
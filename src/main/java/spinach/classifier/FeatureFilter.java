@@ -0,0 +1,15 @@
+package spinach.classifier;
+
+/**
+ * Decides, from its key (see {@link FeatureTemplates}), whether or not a feature is kept.
+ */
+public interface FeatureFilter {
+
+    /**
+     * Whether or not to keep a feature.
+     *
+     * @param key key of the feature
+     * @return true if the feature is kept
+     */
+    boolean accepts(long key);
+}
@@ -0,0 +1,105 @@
+package spinach.classifier;
+
+/**
+ * A set of feature keys (see {@link FeatureTemplates}), stored in an open addressing table.
+ * The table may be fronted by a Bloom filter: most lookups of keys not in the set are then
+ * answered from the filter's bit array, which is much smaller than the table, without probing
+ * the table at all. This pays off when most keys looked up are not in the set.
+ * <p/>
+ * Not thread safe while keys are being added; any number of threads may read a set
+ * that is no longer modified.
+ */
+public class FeatureKeySet {
+
+    private static final int BLOOM_BITS_PER_KEY = 8;
+    private static final int BLOOM_HASHES = 3;
+
+    private final LongIntMap table;
+    private final long[] bloomBits;
+    private final int bloomMask;
+
+    /**
+     * Creates an empty set.
+     *
+     * @param expectedSize number of keys expected
+     * @param bloomFilter  whether or not to front the set with a Bloom filter;
+     *                     the filter is sized for the expected number of keys
+     */
+    public FeatureKeySet(int expectedSize, boolean bloomFilter) {
+        table = new LongIntMap(expectedSize);
+
+        if (bloomFilter) {
+            int numBits = 64;
+            while (numBits < (long) expectedSize * BLOOM_BITS_PER_KEY)
+                numBits <<= 1;
+            bloomBits = new long[numBits / 64];
+            bloomMask = numBits - 1;
+        } else {
+            bloomBits = null;
+            bloomMask = 0;
+        }
+    }
+
+    /**
+     * Adds a key to the set.
+     *
+     * @param key key to add
+     */
+    public void add(long key) {
+        table.put(key, 0);
+
+        if (bloomBits != null) {
+            long h1 = mix(key);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (int) (h1 + i * h2) & bloomMask;
+                bloomBits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Whether or not a key is in the set.
+     *
+     * @param key key to look up
+     * @return true if the key has been added
+     */
+    public boolean contains(long key) {
+        if (bloomBits != null) {
+            long h1 = mix(key);
+            long h2 = mix(h1) | 1;
+            for (int i = 0; i < BLOOM_HASHES; i++) {
+                int bit = (int) (h1 + i * h2) & bloomMask;
+                if ((bloomBits[bit >>> 6] & (1L << bit)) == 0)
+                    return false;
+            }
+        }
+        return table.containsKey(key);
+    }
+
+    /**
+     * Whether or not the set is fronted by a Bloom filter.
+     *
+     * @return true if there is a Bloom filter
+     */
+    public boolean hasBloomFilter() {
+        return bloomBits != null;
+    }
+
+    /**
+     * Returns the number of keys in the set.
+     *
+     * @return number of keys
+     */
+    public int size() {
+        return table.size();
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,120 @@
+package spinach.classifier;
+
+import java.util.Arrays;
+
+/**
+ * A FeatureSink that only computes the key of each feature (see {@link FeatureTemplates}),
+ * hashing the parts of a feature as they are appended, so that no strings are built.
+ * The keys are kept in the order they were added, and may contain duplicates.
+ * <p/>
+ * A sink can be cleared and reused for the next input.
+ */
+public class FeatureKeySink extends FeatureSink {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private long[] keys;
+    private int size;
+
+    private int template;
+    private long hash;
+    private final char[] digits = new char[11];
+
+    /**
+     * Creates an empty sink.
+     */
+    public FeatureKeySink() {
+        keys = new long[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns the number of keys added.
+     *
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a key.
+     *
+     * @param i index of the key
+     * @return the i-th key added
+     */
+    public long keyAt(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Removes all keys, so the sink can be reused.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the keys added.
+     *
+     * @return array of keys
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(keys, size);
+    }
+
+    @Override
+    public void add(String feature) {
+        addKey(FeatureTemplates.keyOf(feature));
+    }
+
+    @Override
+    public FeatureSink begin(int template) {
+        this.template = template;
+        hash = FeatureTemplates.prefixHash(template);
+        return this;
+    }
+
+    @Override
+    public FeatureSink append(CharSequence part) {
+        hash = FeatureTemplates.hash(hash, part == null ? "null" : part);
+        return this;
+    }
+
+    @Override
+    public FeatureSink append(char c) {
+        hash = FeatureTemplates.hash(hash, c);
+        return this;
+    }
+
+    @Override
+    public FeatureSink append(int i) {
+        long value = i;
+        if (value < 0) {
+            hash = FeatureTemplates.hash(hash, '-');
+            value = -value;
+        }
+
+        int start = digits.length;
+        do {
+            digits[--start] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+
+        for (int j = start; j < digits.length; j++)
+            hash = FeatureTemplates.hash(hash, digits[j]);
+        return this;
+    }
+
+    @Override
+    public void end() {
+        addKey(FeatureTemplates.keyOf(template, hash));
+    }
+
+    private void addKey(long key) {
+        if (!accepts(key))
+            return;
+        if (size == keys.length)
+            keys = Arrays.copyOf(keys, size * 2);
+        keys[size++] = key;
+    }
+}
@@ -0,0 +1,73 @@
+package spinach.classifier;
+
+import java.util.Collection;
+
+/**
+ * A FeatureSink that builds the name of each feature, and adds it to a collection.
+ */
+public class FeatureNameSink extends FeatureSink {
+
+    private final Collection<String> names;
+    private final StringBuilder current = new StringBuilder();
+    private int template;
+
+    /**
+     * Creates a sink that adds feature names to a collection.
+     *
+     * @param names collection to add names to
+     */
+    public FeatureNameSink(Collection<String> names) {
+        this.names = names;
+    }
+
+    /**
+     * Returns the collection of names.
+     *
+     * @return feature names added so far
+     */
+    public Collection<String> getNames() {
+        return names;
+    }
+
+    @Override
+    public void add(String feature) {
+        if (getFilter() == null || accepts(FeatureTemplates.keyOf(feature)))
+            names.add(feature);
+    }
+
+    @Override
+    public FeatureSink begin(int template) {
+        this.template = template;
+        current.setLength(0);
+        current.append(FeatureTemplates.prefixOf(template));
+        return this;
+    }
+
+    @Override
+    public FeatureSink append(CharSequence part) {
+        current.append(part);
+        return this;
+    }
+
+    @Override
+    public FeatureSink append(char c) {
+        current.append(c);
+        return this;
+    }
+
+    @Override
+    public FeatureSink append(int i) {
+        current.append(i);
+        return this;
+    }
+
+    @Override
+    public void end() {
+        if (getFilter() != null) {
+            long hash = FeatureTemplates.hash(FeatureTemplates.FNV_OFFSET_BASIS, current);
+            if (!accepts(FeatureTemplates.keyOf(template, hash)))
+                return;
+        }
+        names.add(current.toString());
+    }
+}
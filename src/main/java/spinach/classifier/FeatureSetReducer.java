@@ -0,0 +1,320 @@
+package spinach.classifier;
+
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.stats.Counters;
+import spinach.sentence.SemanticFrameSet;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Finds the features that appear often enough in a training set to be worth keeping,
+ * for any number of feature generators at once, and sets them as the generators' allowed features.
+ * <p/>
+ * Counting every distinct feature exactly takes memory in proportion to the size of the corpus,
+ * so the training set is gone over twice, in parallel over chunks of sentences. The first pass only counts
+ * feature keys in count-min sketches, which take a fixed amount of memory. Since a sketch never
+ * underestimates a count, every feature frequent enough is still a candidate after the first pass;
+ * the second pass counts the names of just those candidates exactly. The features kept are
+ * exactly those that counting every feature would keep.
+ * <p/>
+ * The training set is streamed: only a few chunks of sentences are held at a time, so a corpus
+ * read with {@link spinach.CorpusUtils#streamCorpus(String)} is never loaded whole. The sketches
+ * of all threads together take no more than the sketch memory, however many threads there are.
+ */
+public class FeatureSetReducer {
+
+    /**
+     * Number of rows in each count-min sketch.
+     */
+    public static final int SKETCH_DEPTH = 4;
+
+    /**
+     * Default number of bytes all the count-min sketches may take together.
+     */
+    public static final long DEFAULT_SKETCH_MEMORY = 64L << 20;
+
+    private static final int MIN_SKETCH_WIDTH = 1 << 10;
+    private static final int MAX_SKETCH_WIDTH = 1 << 30;
+    private static final int CHUNK_SIZE = 256;
+    private static final long POLL_MILLIS = 100;
+
+    private static final List<SemanticFrameSet> END_OF_INPUT = new ArrayList<SemanticFrameSet>(0);
+
+    private final List<ReducibleFeatureGenerator> featureGenerators = new ArrayList<ReducibleFeatureGenerator>();
+    private final int threshold;
+
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private long sketchMemory = DEFAULT_SKETCH_MEMORY;
+
+    /**
+     * Creates a reducer for an argument and a predicate feature generator, say.
+     *
+     * @param featureGenerator      feature generator to reduce, or null
+     * @param otherFeatureGenerator another feature generator to reduce in the same passes, or null
+     * @param threshold             number of times a counted feature must appear to be kept,
+     *                              from 1 to {@link CountMinSketch#MAX_COUNT_LIMIT}
+     */
+    public FeatureSetReducer(ReducibleFeatureGenerator featureGenerator,
+                             ReducibleFeatureGenerator otherFeatureGenerator, int threshold) {
+        if (threshold < 1 || threshold > CountMinSketch.MAX_COUNT_LIMIT)
+            throw new IllegalArgumentException("Threshold must be between 1 and " + CountMinSketch.MAX_COUNT_LIMIT);
+        if (featureGenerator != null)
+            featureGenerators.add(featureGenerator);
+        if (otherFeatureGenerator != null)
+            featureGenerators.add(otherFeatureGenerator);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the number of threads to count with.
+     *
+     * @param numThreads number of threads
+     */
+    public void setNumThreads(int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Sets the number of bytes the count-min sketches of all threads may take together.
+     * More memory lets fewer infrequent features through to be counted exactly.
+     *
+     * @param bytes memory for sketches
+     */
+    public void setSketchMemory(long bytes) {
+        if (bytes < 1)
+            throw new IllegalArgumentException("Sketch memory must be positive");
+        sketchMemory = bytes;
+    }
+
+    /**
+     * Counts the features of a training set, and sets the features that appear at least
+     * the threshold number of times as the generators' allowed non-structural features.
+     *
+     * @param trainingSet training set used to train; it is iterated over twice
+     */
+    public void reduce(Iterable<SemanticFrameSet> trainingSet) {
+        int numGenerators = featureGenerators.size();
+        if (numGenerators == 0)
+            return;
+
+        int width = sketchWidth();
+        final KeySketcher[][] sketchers = new KeySketcher[numGenerators][numThreads];
+        for (int g = 0; g < numGenerators; g++)
+            for (int w = 0; w < numThreads; w++)
+                sketchers[g][w] = new KeySketcher(featureGenerators.get(g), width);
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            runPass(executor, trainingSet, new Pass() {
+                @Override
+                void count(SemanticFrameSet frameSet, int w) {
+                    for (KeySketcher[] generatorSketchers : sketchers)
+                        generatorSketchers[w].count(frameSet);
+                }
+            });
+
+            final NameCounter[][] counters = new NameCounter[numGenerators][numThreads];
+            for (int g = 0; g < numGenerators; g++) {
+                FeatureFilter candidates = candidatesOf(sketchers[g]);
+                sketchers[g] = null;
+                for (int w = 0; w < numThreads; w++)
+                    counters[g][w] = new NameCounter(featureGenerators.get(g), candidates);
+            }
+
+            runPass(executor, trainingSet, new Pass() {
+                @Override
+                void count(SemanticFrameSet frameSet, int w) {
+                    for (NameCounter[] generatorCounters : counters)
+                        generatorCounters[w].count(frameSet);
+                }
+            });
+
+            for (int g = 0; g < numGenerators; g++) {
+                Set<String> allowed = allowedFeatures(counters[g]);
+                featureGenerators.get(g).setAllowedNonStructuralFeatures(allowed);
+                System.err.println(featureGenerators.get(g).getClass().getSimpleName() +
+                        " features allowed: " + allowed.size());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+    Widest sketches, in powers of two, that fit in the sketch memory when every thread
+    has a sketch for every generator.
+     */
+    private int sketchWidth() {
+        long bytesPerSketch = sketchMemory / ((long) numThreads * featureGenerators.size() * SKETCH_DEPTH);
+        int width = MIN_SKETCH_WIDTH;
+        while (width < MAX_SKETCH_WIDTH && 2L * width <= bytesPerSketch)
+            width *= 2;
+        return width;
+    }
+
+    private abstract static class Pass {
+        abstract void count(SemanticFrameSet frameSet, int w);
+    }
+
+    /*
+    Reads the training set in chunks, handing each chunk to whichever worker takes it next.
+    The queue of chunks is bounded, so reading never gets far ahead of counting.
+     */
+    private void runPass(ExecutorService executor, Iterable<SemanticFrameSet> trainingSet, final Pass pass) {
+        final BlockingQueue<List<SemanticFrameSet>> chunks =
+                new ArrayBlockingQueue<List<SemanticFrameSet>>(2 * numThreads);
+        List<Future<?>> workers = new ArrayList<Future<?>>(numThreads);
+        for (int w = 0; w < numThreads; w++) {
+            final int workerIndex = w;
+            workers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    for (List<SemanticFrameSet> chunk = chunks.take(); chunk != END_OF_INPUT; chunk = chunks.take())
+                        for (SemanticFrameSet frameSet : chunk)
+                            pass.count(frameSet, workerIndex);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            List<SemanticFrameSet> chunk = new ArrayList<SemanticFrameSet>(CHUNK_SIZE);
+            for (SemanticFrameSet frameSet : trainingSet) {
+                chunk.add(frameSet);
+                if (chunk.size() == CHUNK_SIZE) {
+                    enqueue(chunks, chunk, workers);
+                    chunk = new ArrayList<SemanticFrameSet>(CHUNK_SIZE);
+                }
+            }
+            if (!chunk.isEmpty())
+                enqueue(chunks, chunk, workers);
+            for (int w = 0; w < numThreads; w++)
+                enqueue(chunks, END_OF_INPUT, workers);
+
+            for (Future<?> worker : workers)
+                worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while counting features", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<?> worker : workers)
+                worker.cancel(true);
+        }
+    }
+
+    /*
+    Waits for room in the queue, unless a worker has failed, in which case its failure is rethrown.
+     */
+    private static void enqueue(BlockingQueue<List<SemanticFrameSet>> chunks, List<SemanticFrameSet> chunk,
+                                List<Future<?>> workers) throws InterruptedException, ExecutionException {
+        while (!chunks.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS))
+            for (Future<?> worker : workers)
+                if (worker.isDone())
+                    worker.get();
+    }
+
+    private static FeatureFilter countedBy(final ReducibleFeatureGenerator featureGenerator) {
+        return new FeatureFilter() {
+            @Override
+            public boolean accepts(long key) {
+                return featureGenerator.isCounted(key);
+            }
+        };
+    }
+
+    /*
+    Adds the keys of the counted features of one generator to a sketch. Features are not
+    counted once per input here: that can only overestimate a count, which a sketch may do anyway.
+     */
+    private class KeySketcher implements FeatureCounter {
+        private final ReducibleFeatureGenerator featureGenerator;
+        private final CountMinSketch sketch;
+        private final FeatureKeySink keys = new FeatureKeySink();
+
+        KeySketcher(ReducibleFeatureGenerator featureGenerator, int width) {
+            this.featureGenerator = featureGenerator;
+            sketch = new CountMinSketch(SKETCH_DEPTH, width, threshold);
+            keys.setFilter(countedBy(featureGenerator));
+        }
+
+        void count(SemanticFrameSet frameSet) {
+            featureGenerator.countFeatures(frameSet, this);
+            nextInput();
+        }
+
+        @Override
+        public FeatureSink nextInput() {
+            for (int i = 0; i < keys.size(); i++)
+                sketch.add(keys.keyAt(i));
+            keys.clear();
+            return keys;
+        }
+    }
+
+    /*
+    Counts the names of the candidate features of one generator exactly.
+     */
+    private static class NameCounter implements FeatureCounter {
+        private final ReducibleFeatureGenerator featureGenerator;
+        private final Collection<String> features;
+        private final FeatureNameSink names;
+        private final Counter<String> counts = new ClassicCounter<String>();
+
+        NameCounter(ReducibleFeatureGenerator featureGenerator, FeatureFilter candidates) {
+            this.featureGenerator = featureGenerator;
+            features = featureGenerator.countsOncePerInput() ? new HashSet<String>() : new ArrayList<String>();
+            names = new FeatureNameSink(features);
+            names.setFilter(candidates);
+        }
+
+        void count(SemanticFrameSet frameSet) {
+            featureGenerator.countFeatures(frameSet, this);
+            nextInput();
+        }
+
+        @Override
+        public FeatureSink nextInput() {
+            for (String feature : features)
+                counts.incrementCount(feature);
+            features.clear();
+            return names;
+        }
+    }
+
+    private FeatureFilter candidatesOf(KeySketcher[] sketchers) {
+        CountMinSketch merged = sketchers[0].sketch;
+        for (int w = 1; w < sketchers.length; w++)
+            merged.merge(sketchers[w].sketch);
+
+        final CountMinSketch sketch = merged;
+        final ReducibleFeatureGenerator featureGenerator = sketchers[0].featureGenerator;
+        return new FeatureFilter() {
+            @Override
+            public boolean accepts(long key) {
+                return featureGenerator.isCounted(key) && sketch.estimate(key) >= threshold;
+            }
+        };
+    }
+
+    private Set<String> allowedFeatures(NameCounter[] counters) {
+        Counter<String> total = counters[0].counts;
+        for (int w = 1; w < counters.length; w++)
+            Counters.addInPlace(total, counters[w].counts);
+
+        Set<String> allowed = new HashSet<String>();
+        for (String s : total.keySet())
+            if (total.getCount(s) >= threshold)
+                allowed.add(s);
+        return allowed;
+    }
+}
@@ -0,0 +1,118 @@
+package spinach.classifier;
+
+/**
+ * Receives the features generated for some input, one at a time. A feature is either
+ * added whole, as a string, or built from a template: {@link #begin(int)} starts a feature
+ * with a template's prefix, the append methods add parts to it, and {@link #end()} finishes it.
+ * Only one feature may be built at a time. A sink may have a {@link FeatureFilter}, in which
+ * case it only keeps the features that the filter accepts.
+ * <p/>
+ * What a sink does with a feature depends on the implementation: a {@link FeatureNameSink}
+ * builds each feature's name, while a {@link FeatureKeySink} only computes each feature's key.
+ */
+public abstract class FeatureSink {
+
+    private FeatureFilter filter;
+
+    /**
+     * Sets a filter that decides which features the sink keeps. Features the filter does not
+     * accept are dropped as they are finished, so nothing downstream ever sees them.
+     *
+     * @param filter filter to apply, or null to keep every feature
+     */
+    public void setFilter(FeatureFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the filter that decides which features the sink keeps.
+     *
+     * @return filter, or null if every feature is kept
+     */
+    public FeatureFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Whether or not the sink keeps a feature.
+     *
+     * @param key key of the feature
+     * @return true if there is no filter, or the filter accepts the feature
+     */
+    protected boolean accepts(long key) {
+        return filter == null || filter.accepts(key);
+    }
+
+    /**
+     * Adds a whole feature.
+     *
+     * @param feature feature name
+     */
+    public abstract void add(String feature);
+
+    /**
+     * Starts a feature of some template.
+     *
+     * @param template id of a template registered with {@link FeatureTemplates}
+     * @return this sink
+     */
+    public abstract FeatureSink begin(int template);
+
+    /**
+     * Appends a part to the current feature.
+     *
+     * @param part part to append
+     * @return this sink
+     */
+    public abstract FeatureSink append(CharSequence part);
+
+    /**
+     * Appends a character to the current feature.
+     *
+     * @param c character to append
+     * @return this sink
+     */
+    public abstract FeatureSink append(char c);
+
+    /**
+     * Appends an integer to the current feature, in decimal.
+     *
+     * @param i integer to append
+     * @return this sink
+     */
+    public abstract FeatureSink append(int i);
+
+    /**
+     * Appends a boolean to the current feature, as "true" or "false".
+     *
+     * @param b boolean to append
+     * @return this sink
+     */
+    public FeatureSink append(boolean b) {
+        return append(b ? "true" : "false");
+    }
+
+    /**
+     * Finishes the current feature.
+     */
+    public abstract void end();
+
+    /**
+     * Adds a feature made of a template's prefix and one part.
+     *
+     * @param template template id
+     * @param part     part following the prefix
+     */
+    public void add(int template, CharSequence part) {
+        begin(template).append(part).end();
+    }
+
+    /**
+     * Adds a feature made of only a template's prefix.
+     *
+     * @param template template id
+     */
+    public void add(int template) {
+        begin(template).end();
+    }
+}
@@ -0,0 +1,169 @@
+package spinach.classifier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A registry of feature templates. Each template is a kind of feature, identified by the
+ * prefix that all of its features start with (such as "aL|" for argument lemmas), and is
+ * given a small id.
+ * <p/>
+ * A feature can be identified by a 64 bit key instead of its name: the template id in the
+ * top 8 bits, and a 64 bit FNV-1a hash of the feature's name in the other 56. A key can be
+ * computed from the parts of a feature as they are generated (see {@link FeatureKeySink}),
+ * without ever building the name, and gives the same key as {@link #keyOf(String)} gives
+ * for the name. Names cannot be recovered from keys; to see the names of features,
+ * generate them again with a {@link FeatureNameSink}.
+ */
+public final class FeatureTemplates {
+
+    /**
+     * Prefix of structural features (features that depend on previously classified arguments).
+     */
+    public static final String STRUCTURAL_PREFIX = "QQ";
+
+    private static final int MAX_TEMPLATES = 256;
+    private static final int TEMPLATE_SHIFT = 56;
+    private static final long HASH_MASK = (1L << TEMPLATE_SHIFT) - 1;
+
+    static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final List<String> prefixes = new ArrayList<String>();
+    private static volatile Map<String, Integer> templateIds = new HashMap<String, Integer>();
+    private static volatile String[] prefixArray = new String[0];
+    private static volatile long[] prefixHashes = new long[0];
+    private static volatile boolean[] structural = new boolean[0];
+
+    /**
+     * Template of features that were generated as whole strings, rather than from a template.
+     */
+    public static final int UNTEMPLATED = register("");
+
+    /**
+     * Template of structural features that were generated as whole strings, rather than from a template.
+     */
+    public static final int UNTEMPLATED_STRUCTURAL = register(STRUCTURAL_PREFIX);
+
+    private FeatureTemplates() {
+    }
+
+    /**
+     * Registers a template, or finds the template already registered with some prefix.
+     * A prefix either ends with its only '|', or contains no '|' at all, in which case
+     * it is the whole feature, and nothing may be appended to it.
+     *
+     * @param prefix prefix that every feature of the template starts with
+     * @return id of the template
+     */
+    public static synchronized int register(String prefix) {
+        Integer id = templateIds.get(prefix);
+        if (id != null)
+            return id;
+
+        int separator = prefix.indexOf('|');
+        if (separator >= 0 && separator != prefix.length() - 1)
+            throw new IllegalArgumentException("Template prefix may only end with '|': " + prefix);
+        if (prefixes.size() == MAX_TEMPLATES)
+            throw new IllegalStateException("Too many feature templates");
+
+        id = prefixes.size();
+        prefixes.add(prefix);
+        //copied, so that templates can be looked up without locking
+        Map<String, Integer> newIds = new HashMap<String, Integer>(templateIds);
+        newIds.put(prefix, id);
+        templateIds = newIds;
+
+        int numTemplates = prefixes.size();
+        String[] newPrefixes = prefixes.toArray(new String[numTemplates]);
+        long[] newHashes = new long[numTemplates];
+        boolean[] newStructural = new boolean[numTemplates];
+        for (int i = 0; i < numTemplates; i++) {
+            newHashes[i] = hash(FNV_OFFSET_BASIS, newPrefixes[i]);
+            newStructural[i] = newPrefixes[i].startsWith(STRUCTURAL_PREFIX);
+        }
+        prefixArray = newPrefixes;
+        prefixHashes = newHashes;
+        structural = newStructural;
+
+        return id;
+    }
+
+    /**
+     * Returns the prefix of a template.
+     *
+     * @param template template id
+     * @return prefix of the template's features
+     */
+    public static String prefixOf(int template) {
+        return prefixArray[template];
+    }
+
+    /**
+     * Whether or not the features of a template are structural features.
+     *
+     * @param template template id
+     * @return true if the template's prefix starts with {@link #STRUCTURAL_PREFIX}
+     */
+    public static boolean isStructural(int template) {
+        return structural[template];
+    }
+
+    /**
+     * Returns the template of a feature key.
+     *
+     * @param key feature key
+     * @return template id
+     */
+    public static int templateOf(long key) {
+        return (int) (key >>> TEMPLATE_SHIFT);
+    }
+
+    /**
+     * Returns the key of a feature, given its name.
+     *
+     * @param name feature name
+     * @return key of the feature
+     */
+    public static long keyOf(String name) {
+        return keyOf(templateOfName(name), hash(FNV_OFFSET_BASIS, name));
+    }
+
+    /**
+     * Describes a feature key, for debugging.
+     *
+     * @param key feature key
+     * @return the key's template prefix and hash
+     */
+    public static String describe(long key) {
+        return prefixOf(templateOf(key)) + "#" + Long.toHexString(key & HASH_MASK);
+    }
+
+    static long keyOf(int template, long hash) {
+        return ((long) template << TEMPLATE_SHIFT) | (hash & HASH_MASK);
+    }
+
+    static long prefixHash(int template) {
+        return prefixHashes[template];
+    }
+
+    static long hash(long hash, CharSequence s) {
+        for (int i = 0; i < s.length(); i++)
+            hash = hash(hash, s.charAt(i));
+        return hash;
+    }
+
+    static long hash(long hash, char c) {
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    private static int templateOfName(String name) {
+        int separator = name.indexOf('|');
+        Integer id = templateIds.get(separator >= 0 ? name.substring(0, separator + 1) : name);
+        if (id != null)
+            return id;
+        return name.startsWith(STRUCTURAL_PREFIX) ? UNTEMPLATED_STRUCTURAL : UNTEMPLATED;
+    }
+}
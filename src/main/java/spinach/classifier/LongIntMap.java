@@ -0,0 +1,126 @@
+package spinach.classifier;
+
+import java.util.Arrays;
+
+/**
+ * A map from longs to non-negative ints, using open addressing with linear probing,
+ * so that looking up a key neither boxes it nor follows any pointers.
+ * Used to map feature keys (see {@link FeatureTemplates}) to feature indices.
+ * <p/>
+ * Not thread safe while being modified; any number of threads may read a map
+ * that is no longer modified.
+ */
+public class LongIntMap {
+
+    /**
+     * Value returned for keys not in the map.
+     */
+    public static final int NO_VALUE = -1;
+
+    private static final double MAX_LOAD = 0.5;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates a map with room for some number of entries.
+     *
+     * @param expectedSize number of entries expected
+     */
+    public LongIntMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < expectedSize)
+            capacity <<= 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key key to look up
+     * @return value of the key, or {@link #NO_VALUE} if the key is not in the map
+     */
+    public int get(long key) {
+        for (int slot = slotOf(key, mask); ; slot = (slot + 1) & mask) {
+            int value = values[slot];
+            if (value == NO_VALUE || keys[slot] == key)
+                return value;
+        }
+    }
+
+    /**
+     * Whether or not the map contains a key.
+     *
+     * @param key key to look up
+     * @return true if the key has a value
+     */
+    public boolean containsKey(long key) {
+        return get(key) != NO_VALUE;
+    }
+
+    /**
+     * Sets the value of a key.
+     *
+     * @param key   key
+     * @param value non-negative value
+     * @return the previous value of the key, or {@link #NO_VALUE}
+     */
+    public int put(long key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Values must be non-negative");
+
+        int slot = slotOf(key, mask);
+        while (values[slot] != NO_VALUE) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * MAX_LOAD)
+            rehash();
+        return NO_VALUE;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (values[slot] != NO_VALUE)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries in the map.
+     *
+     * @return number of keys with values
+     */
+    public int size() {
+        return size;
+    }
+}
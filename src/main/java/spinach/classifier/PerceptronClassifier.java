@@ -15,6 +15,14 @@ import java.util.*;
 
 /**
  * A classifier based on a multiclass perceptron.
+ * <p/>
+ * Classifying with the average weights ({@link #scoresOf}, {@link #classOf}, and
+ * {@link #updateCounterScores} outside of training) only reads the model, so once
+ * trained, a classifier may be shared by any number of threads. Training, and the
+ * training-weight methods, modify the model and must not run alongside anything else.
+ * <p/>
+ * When classifying with the average weights, features may also be given by their keys
+ * (see {@link FeatureTemplates}) instead of a datum, which saves building their names.
  *
  * @author Calvin Huang
  */
@@ -22,6 +30,8 @@ public class PerceptronClassifier implements Classifier, Serializable {
 
     private static final long serialVersionUID = 1L;
     private static final double ARRAY_INCREMENT_FACTOR = 2;
+    private static final int BOUND_GROUP_SIZE = 16;
+    private static final double BOUND_TOLERANCE = 1e-9;
 
     private boolean autoUpdateWeights;
     private int burnInPeriod;
@@ -68,7 +78,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
             currentIteration++;
         }
 
-        void updateAverage(Set<Integer> exampleFeatureIndices) {
+        void updateAverage(int[] exampleFeatureIndices) {
             for (int i : exampleFeatureIndices)
                 updateAverageForIndex(i);
         }
@@ -100,7 +110,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
             lastUpdateIteration = Arrays.copyOf(lastUpdateIteration, newLength);
         }
 
-        void update(Set<Integer> exampleFeatureIndices, double weight) {
+        void update(int[] exampleFeatureIndices, double weight) {
             if (autoUpdateWeights)
                 updateAverage(exampleFeatureIndices);
 
@@ -110,7 +120,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
             }
         }
 
-        double trainingDotProduct(Set<Integer> featureCounts) {
+        double trainingDotProduct(int[] featureCounts) {
             double dotProd = 0;
             for (int i : featureCounts)
                 if (i < weights.length)
@@ -118,7 +128,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
             return dotProd;
         }
 
-        double avgDotProduct(Set<Integer> featureCounts) {
+        double avgDotProduct(int[] featureCounts) {
             double dotProd = 0;
             for (int i : featureCounts)
                 if (i < avgWeights.length)
@@ -159,6 +169,45 @@ public class PerceptronClassifier implements Classifier, Serializable {
 
     private final int epochs;
 
+    private boolean boundedScoring;
+    private transient volatile ScoreBounds scoreBounds;
+    private transient volatile KeyIndex keyIndex;
+
+    /*
+    For every feature, the largest and smallest average weight any label gives it,
+    and the order in which features are scored when scoring is bounded:
+    features whose weights differ most between labels come first.
+     */
+    private static class ScoreBounds {
+        final double[] maxWeights;
+        final double[] minWeights;
+        final int[] rankOf;
+        final int[] featureAt;
+
+        ScoreBounds(double[] maxWeights, double[] minWeights, int[] rankOf, int[] featureAt) {
+            this.maxWeights = maxWeights;
+            this.minWeights = minWeights;
+            this.rankOf = rankOf;
+            this.featureAt = featureAt;
+        }
+    }
+
+    /*
+    Maps the key of every indexed feature (see FeatureTemplates) to its index,
+    so features can be scored from their keys. Rebuilt whenever features are added.
+     */
+    private static class KeyIndex {
+        final LongIntMap map;
+        final int numFeatures;
+
+        KeyIndex(Index<String> featureIndex) {
+            numFeatures = featureIndex.size();
+            map = new LongIntMap(numFeatures);
+            for (int i = 0; i < numFeatures; i++)
+                map.put(FeatureTemplates.keyOf(featureIndex.get(i)), i);
+        }
+    }
+
     /**
      * Creates a perceptron classifier
      *
@@ -194,6 +243,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
         int numFeatures = featureIndex.size();
 
         zWeights = new HashMap<String, LabelWeights>();
+        scoreBounds = null;
         for (String label : dataset.labelIndex())
             zWeights.put(label, new LabelWeights(numFeatures));
 
@@ -250,7 +300,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
         String predictedLabel = unformattedLabel.substring(0, separatorPos);
         String goldLabel = unformattedLabel.substring(separatorPos + 1);
 
-        train(featuresOf(datum), goldLabel, predictedLabel);
+        train(featuresOf(datum, true), goldLabel, predictedLabel);
     }
 
     /**
@@ -265,7 +315,8 @@ public class PerceptronClassifier implements Classifier, Serializable {
         return predictedLabel + SPACER + goldLabel;
     }
 
-    private void train(Set<Integer> featureIndices, String goldLabel, String predictedLabel) {
+    private void train(int[] featureIndices, String goldLabel, String predictedLabel) {
+        scoreBounds = null;
 
         if (!zWeights.containsKey(goldLabel))
             zWeights.put(goldLabel, new LabelWeights(featureIndex.size()));
@@ -285,7 +336,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
     }
 
     private void train(Datum<String, String> datum) {
-        Set<Integer> exampleFeatureIndices = featuresOf(datum);
+        int[] exampleFeatureIndices = featuresOf(datum, true);
 
         String predictedLabel = argMaxDotProduct(exampleFeatureIndices, false);
         String goldLabel = datum.label();
@@ -294,22 +345,65 @@ public class PerceptronClassifier implements Classifier, Serializable {
     }
 
     /*
-    Given a datum, returns a set of integers that are the array indices for
-    the features in that datum.
+    Given a datum, returns the sorted, distinct array indices for the features in that datum.
+    Unless addNew is set, features that have not been seen before are left out
+    (they have no weight) and the index is not modified.
+     */
+    private int[] featuresOf(Datum<String, String> datum, boolean addNew) {
+        Collection<String> features = datum.asFeatures();
+        int[] featureIndices = new int[features.size()];
+        int numIndices = 0;
+        for (String feature : features) {
+            int index = addNew ? featureIndex.indexOf(feature, true) : featureIndex.indexOf(feature);
+            if (index >= 0)
+                featureIndices[numIndices++] = index;
+        }
+        return distinct(featureIndices, numIndices);
+    }
+
+    /*
+    Given the keys of some features (see FeatureTemplates), returns the sorted, distinct array
+    indices for those features. Features that have not been seen before are left out.
      */
-    private Set<Integer> featuresOf(Datum<String, String> datum) {
-        Set<Integer> featureIndices = new HashSet<Integer>();
-        for (String feature : datum.asFeatures()) {
-            int index = featureIndex.indexOf(feature, true);
-            featureIndices.add(index);
+    private int[] featuresOf(FeatureKeySink keys) {
+        LongIntMap map = keyIndex();
+        int[] featureIndices = new int[keys.size()];
+        int numIndices = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            int index = map.get(keys.keyAt(i));
+            if (index >= 0)
+                featureIndices[numIndices++] = index;
+        }
+        return distinct(featureIndices, numIndices);
+    }
+
+    private static int[] distinct(int[] indices, int length) {
+        Arrays.sort(indices, 0, length);
+        int numDistinct = 0;
+        for (int i = 0; i < length; i++)
+            if (numDistinct == 0 || indices[i] != indices[numDistinct - 1])
+                indices[numDistinct++] = indices[i];
+        return numDistinct == indices.length ? indices : Arrays.copyOf(indices, numDistinct);
+    }
+
+    private LongIntMap keyIndex() {
+        KeyIndex index = keyIndex;
+        if (index == null || index.numFeatures != featureIndex.size()) {
+            synchronized (this) {
+                index = keyIndex;
+                if (index == null || index.numFeatures != featureIndex.size()) {
+                    index = new KeyIndex(featureIndex);
+                    keyIndex = index;
+                }
+            }
         }
-        return featureIndices;
+        return index.map;
     }
 
     /**
      * Returns the label that gives the greatest score for some features
      */
-    private String argMaxDotProduct(Set<Integer> exampleFeatureIndices, boolean training) {
+    private String argMaxDotProduct(int[] exampleFeatureIndices, boolean training) {
         double maxDotProduct = Double.NEGATIVE_INFINITY;
         String argMax = "";
 
@@ -348,7 +442,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
 
     private Counter<String> scoresOf(Datum<String, String> datum, boolean training) {
         Counter<String> scores = new ClassicCounter<String>();
-        Set<Integer> featureCounts = featuresOf(datum);
+        int[] featureCounts = featuresOf(datum, training);
         for (Map.Entry<String, LabelWeights> entry : zWeights.entrySet())
             scores.incrementCount(entry.getKey(),
                     training ? entry.getValue().trainingDotProduct(featureCounts) :
@@ -356,6 +450,252 @@ public class PerceptronClassifier implements Classifier, Serializable {
         return scores;
     }
 
+    /**
+     * Returns the scores of some of the labels of a datum. Scoring only the labels that
+     * are possible for the datum saves computing the scores of every other label.
+     *
+     * @param datum    datum to be examined
+     * @param labels   labels to score; labels this classifier has not seen are left out
+     * @param training whether or not to use training weights
+     * @return Counter with scores of each of those labels
+     */
+    public Counter<String> scoresOf(Datum<String, String> datum, Collection<String> labels, boolean training) {
+        return scoresOf(featuresOf(datum, training), labels, training);
+    }
+
+    /**
+     * Returns the average-weight scores of some of the labels, for the features with some keys
+     * (see {@link FeatureTemplates}). This is the same as scoring a datum with the features
+     * of those keys, without the feature names ever being built.
+     *
+     * @param keys   keys of the features to be examined
+     * @param labels labels to score; labels this classifier has not seen are left out
+     * @return Counter with scores of each of those labels
+     */
+    public Counter<String> scoresOf(FeatureKeySink keys, Collection<String> labels) {
+        return scoresOf(featuresOf(keys), labels, false);
+    }
+
+    private Counter<String> scoresOf(int[] featureCounts, Collection<String> labels, boolean training) {
+        Counter<String> scores = new ClassicCounter<String>();
+        for (String label : labels) {
+            LabelWeights labelWeights = zWeights.get(label);
+            if (labelWeights != null)
+                scores.setCount(label, training ? labelWeights.trainingDotProduct(featureCounts) :
+                        labelWeights.avgDotProduct(featureCounts));
+        }
+        return scores;
+    }
+
+    /**
+     * Gives the label, out of some labels, with the highest score for a datum.
+     * Ties go to the label that comes first in the collection.
+     * <p/>
+     * If bounded scoring is on, the average weights are used, and the datum's features
+     * are scored a group at a time, dropping each label once it cannot catch up with the
+     * leading label, and stopping once one label is left.
+     *
+     * @param datum    datum to be examined
+     * @param labels   labels to choose from; labels this classifier has not seen are left out
+     * @param training whether or not to use training weights
+     * @return label with highest score, or null if none of the labels have been seen
+     * @see #setBoundedScoring(boolean)
+     */
+    public String argMax(Datum<String, String> datum, Collection<String> labels, boolean training) {
+        return argMax(featuresOf(datum, training), labels, training);
+    }
+
+    /**
+     * Gives the label, out of some labels, with the highest average-weight score for the
+     * features with some keys (see {@link FeatureTemplates}). Ties go to the label that
+     * comes first in the collection. Bounded scoring is used if it is on.
+     *
+     * @param keys   keys of the features to be examined
+     * @param labels labels to choose from; labels this classifier has not seen are left out
+     * @return label with highest score, or null if none of the labels have been seen
+     */
+    public String argMax(FeatureKeySink keys, Collection<String> labels) {
+        return argMax(featuresOf(keys), labels, false);
+    }
+
+    private String argMax(int[] featureCounts, Collection<String> labels, boolean training) {
+        if (boundedScoring && !training)
+            return boundedArgMax(featureCounts, labels);
+
+        double maxDotProduct = Double.NEGATIVE_INFINITY;
+        String argMax = null;
+        for (String label : labels) {
+            LabelWeights labelWeights = zWeights.get(label);
+            if (labelWeights == null)
+                continue;
+            double dotProduct = training ? labelWeights.trainingDotProduct(featureCounts) :
+                    labelWeights.avgDotProduct(featureCounts);
+            if (dotProduct > maxDotProduct) {
+                maxDotProduct = dotProduct;
+                argMax = label;
+            }
+        }
+        return argMax;
+    }
+
+    /*
+    Finds the label with the highest average score, scoring the features in groups, from the
+    features whose weights vary most between labels to those that vary least. After each group,
+    a label is dropped if even the largest weights for the remaining features could not bring it
+    up to the leading label with the smallest weights for the remaining features.
+    Labels that are still left once every feature is scored are compared with their exact scores,
+    so the result is always the same as scoring every label fully.
+     */
+    private String boundedArgMax(int[] featureIndices, Collection<String> labels) {
+        ScoreBounds bounds = scoreBounds();
+
+        int numFeatures = 0;
+        int[] ranks = new int[featureIndices.length];
+        for (int i : featureIndices)
+            if (i < bounds.rankOf.length)
+                ranks[numFeatures++] = bounds.rankOf[i];
+        Arrays.sort(ranks, 0, numFeatures);
+
+        int[] features = new int[numFeatures];
+        double[] remainingMax = new double[numFeatures + 1];
+        double[] remainingMin = new double[numFeatures + 1];
+        for (int i = numFeatures - 1; i >= 0; i--) {
+            features[i] = bounds.featureAt[ranks[i]];
+            remainingMax[i] = remainingMax[i + 1] + bounds.maxWeights[features[i]];
+            remainingMin[i] = remainingMin[i + 1] + bounds.minWeights[features[i]];
+        }
+
+        List<String> labelList = new ArrayList<String>(labels.size());
+        List<LabelWeights> weightList = new ArrayList<LabelWeights>(labels.size());
+        for (String label : labels) {
+            LabelWeights labelWeights = zWeights.get(label);
+            if (labelWeights != null) {
+                labelList.add(label);
+                weightList.add(labelWeights);
+            }
+        }
+
+        int numLabels = labelList.size();
+        if (numLabels == 0)
+            return null;
+
+        double[] partialScores = new double[numLabels];
+        boolean[] active = new boolean[numLabels];
+        Arrays.fill(active, true);
+        int numActive = numLabels;
+
+        for (int start = 0; start < numFeatures && numActive > 1; start += BOUND_GROUP_SIZE) {
+            int end = Math.min(start + BOUND_GROUP_SIZE, numFeatures);
+
+            double leaderScore = Double.NEGATIVE_INFINITY;
+            for (int l = 0; l < numLabels; l++) {
+                if (!active[l])
+                    continue;
+                double[] avgWeights = weightList.get(l).avgWeights;
+                double score = partialScores[l];
+                for (int i = start; i < end; i++)
+                    if (features[i] < avgWeights.length)
+                        score += avgWeights[features[i]];
+                partialScores[l] = score;
+                leaderScore = Math.max(leaderScore, score);
+            }
+
+            double leaderFloor = leaderScore + remainingMin[end];
+            double tolerance = BOUND_TOLERANCE * (Math.abs(leaderFloor) + 1);
+            for (int l = 0; l < numLabels; l++) {
+                if (active[l] && partialScores[l] + remainingMax[end] < leaderFloor - tolerance) {
+                    active[l] = false;
+                    numActive--;
+                }
+            }
+        }
+
+        //the exact scores decide between any labels that could not be told apart
+        double maxDotProduct = Double.NEGATIVE_INFINITY;
+        String argMax = null;
+        for (int l = 0; l < numLabels; l++) {
+            if (!active[l])
+                continue;
+            if (numActive == 1)
+                return labelList.get(l);
+            double dotProduct = weightList.get(l).avgDotProduct(featureIndices);
+            if (dotProduct > maxDotProduct) {
+                maxDotProduct = dotProduct;
+                argMax = labelList.get(l);
+            }
+        }
+        return argMax;
+    }
+
+    private ScoreBounds scoreBounds() {
+        ScoreBounds bounds = scoreBounds;
+        if (bounds == null) {
+            synchronized (this) {
+                bounds = scoreBounds;
+                if (bounds == null) {
+                    bounds = computeScoreBounds();
+                    scoreBounds = bounds;
+                }
+            }
+        }
+        return bounds;
+    }
+
+    private ScoreBounds computeScoreBounds() {
+        int numFeatures = featureIndex.size();
+        double[] maxWeights = new double[numFeatures];
+        double[] minWeights = new double[numFeatures];
+        if (!zWeights.isEmpty()) {
+            Arrays.fill(maxWeights, Double.NEGATIVE_INFINITY);
+            Arrays.fill(minWeights, Double.POSITIVE_INFINITY);
+        }
+
+        for (LabelWeights labelWeights : zWeights.values()) {
+            double[] avgWeights = labelWeights.avgWeights;
+            for (int i = 0; i < numFeatures; i++) {
+                double weight = i < avgWeights.length ? avgWeights[i] : 0;
+                maxWeights[i] = Math.max(maxWeights[i], weight);
+                minWeights[i] = Math.min(minWeights[i], weight);
+            }
+        }
+
+        final double[] spreads = new double[numFeatures];
+        Integer[] order = new Integer[numFeatures];
+        for (int i = 0; i < numFeatures; i++) {
+            spreads[i] = maxWeights[i] - minWeights[i];
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Double.compare(spreads[i2], spreads[i1]);
+            }
+        });
+
+        int[] rankOf = new int[numFeatures];
+        int[] featureAt = new int[numFeatures];
+        for (int rank = 0; rank < numFeatures; rank++) {
+            featureAt[rank] = order[rank];
+            rankOf[order[rank]] = rank;
+        }
+
+        return new ScoreBounds(maxWeights, minWeights, rankOf, featureAt);
+    }
+
+    /**
+     * Sets whether or not classifying with the average weights
+     * ({@link #classOf} and {@link #argMax}) uses bounded scoring.
+     * Bounded scoring gives the same labels as full scoring, but stops scoring a label
+     * as soon as it can no longer win, which saves most of the work when one label
+     * (typically NIL) wins by a wide margin.
+     *
+     * @param boundedScoring whether or not to use bounded scoring
+     */
+    public void setBoundedScoring(boolean boundedScoring) {
+        this.boundedScoring = boundedScoring;
+    }
+
     /**
      * Updates a counter to reflect the correct scores for a datum.
      *
@@ -364,7 +704,21 @@ public class PerceptronClassifier implements Classifier, Serializable {
      * @param training whether or not this is in training mode
      */
     public void updateCounterScores(Datum<String, String> datum, Counter<String> scores, boolean training) {
-        Set<Integer> featureCounts = featuresOf(datum);
+        updateCounterScores(featuresOf(datum, training), scores, training);
+    }
+
+    /**
+     * Updates a counter to reflect the average-weight scores for the features with some keys
+     * (see {@link FeatureTemplates}).
+     *
+     * @param keys   keys of the features to consider
+     * @param scores Counter to update--does not add additional labels
+     */
+    public void updateCounterScores(FeatureKeySink keys, Counter<String> scores) {
+        updateCounterScores(featuresOf(keys), scores, false);
+    }
+
+    private void updateCounterScores(int[] featureCounts, Counter<String> scores, boolean training) {
         for (String label : scores.keySet())
             if (zWeights.containsKey(label))
                 scores.setCount(label, training ? zWeights.get(label).trainingDotProduct(featureCounts) :
@@ -379,7 +733,9 @@ public class PerceptronClassifier implements Classifier, Serializable {
      */
     @Override
     public String classOf(Datum<String, String> datum) {
-        return argMaxDotProduct(featuresOf(datum), false);
+        if (boundedScoring)
+            return boundedArgMax(featuresOf(datum, false), zWeights.keySet());
+        return argMaxDotProduct(featuresOf(datum, false), false);
     }
 
     /**
@@ -390,13 +746,14 @@ public class PerceptronClassifier implements Classifier, Serializable {
      * @return label with highest score
      */
     public String trainingClassOf(Datum<String, String> datum) {
-        return argMaxDotProduct(featuresOf(datum), true);
+        return argMaxDotProduct(featuresOf(datum, true), true);
     }
 
     /**
      * Clears the weights
      */
     public void reset() {
+        scoreBounds = null;
         for (String label : zWeights.keySet())
             zWeights.put(label, new LabelWeights(featureIndex.size()));
     }
@@ -405,6 +762,7 @@ public class PerceptronClassifier implements Classifier, Serializable {
      * Updates all the average weights for accurate results when classifying.
      */
     public void updateAverageWeights() {
+        scoreBounds = null;
         for (LabelWeights l : zWeights.values())
             l.updateAllAverage();
     }
@@ -0,0 +1,45 @@
+package spinach.classifier;
+
+import spinach.sentence.SemanticFrameSet;
+
+import java.util.Set;
+
+/**
+ * A feature generator that leaves out features that appear too few times in training,
+ * once a {@link FeatureSetReducer} has counted them over a training set.
+ */
+public interface ReducibleFeatureGenerator {
+
+    /**
+     * Generates every feature of a sentence, without leaving out the features that are not allowed,
+     * adding the features of each input the generator generates features for to a sink from
+     * {@link FeatureCounter#nextInput()}.
+     *
+     * @param sentence sentence to generate features for
+     * @param counter  counter to add features to
+     */
+    void countFeatures(SemanticFrameSet sentence, FeatureCounter counter);
+
+    /**
+     * Whether or not a feature is counted, and left out if it appears too few times.
+     * Features that are not counted are always kept.
+     *
+     * @param key key of the feature (see {@link FeatureTemplates})
+     * @return true if the feature is counted
+     */
+    boolean isCounted(long key);
+
+    /**
+     * Whether a feature generated more than once for the same input is counted once, or each time.
+     *
+     * @return true if features are counted once per input
+     */
+    boolean countsOncePerInput();
+
+    /**
+     * Sets the counted features that appear often enough to keep.
+     *
+     * @param allowedFeatures set of allowed features
+     */
+    void setAllowedNonStructuralFeatures(Set<String> allowedFeatures);
+}
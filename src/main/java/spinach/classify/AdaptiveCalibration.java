@@ -0,0 +1,59 @@
+package spinach.classify;
+
+import spinach.argumentclassifier.AdaptiveArgumentClassifier;
+import spinach.sentence.SemanticFrameSet;
+
+import java.util.List;
+
+/**
+ * Chooses the candidate count at which an {@link AdaptiveArgumentClassifier} switches
+ * from easy-first to left-to-right decoding, by timing and scoring it on a development set.
+ */
+public class AdaptiveCalibration {
+
+    /**
+     * Chooses the candidate count at which to switch strategies, by parsing a development set
+     * with each of some thresholds. The fastest threshold whose argument F1 is within some
+     * tolerance of the best F1 is kept.
+     *
+     * @param classifier adaptive classifier to calibrate
+     * @param gen        parser that classifies arguments with the classifier
+     * @param dev        development set
+     * @param thresholds thresholds to try
+     * @param tolerance  F1 that may be given up for speed
+     * @return the chosen threshold, which the classifier now uses
+     */
+    public static int calibrate(AdaptiveArgumentClassifier classifier, GEN gen, List<SemanticFrameSet> dev,
+                                int[] thresholds, double tolerance) {
+        if (thresholds.length == 0)
+            throw new IllegalArgumentException("No thresholds to calibrate");
+
+        double[] f1s = new double[thresholds.length];
+        long[] times = new long[thresholds.length];
+        double bestF1 = Double.NEGATIVE_INFINITY;
+
+        classifier.setEasyFirstMaxCandidates(thresholds[0]);
+        new Metric(gen, dev);   //warm up, so the first threshold is not timed cold
+
+        for (int i = 0; i < thresholds.length; i++) {
+            classifier.setEasyFirstMaxCandidates(thresholds[i]);
+
+            long startTime = System.nanoTime();
+            Metric metric = new Metric(gen, dev);
+            times[i] = System.nanoTime() - startTime;
+            f1s[i] = metric.argumentF1s().getCount(Metric.TOTAL);
+            bestF1 = Math.max(bestF1, f1s[i]);
+
+            System.err.format("Threshold %d: argument F1 %.4f in %.2fs%n", thresholds[i], f1s[i], times[i] / 1e9);
+        }
+
+        int chosen = -1;
+        for (int i = 0; i < thresholds.length; i++)
+            if (f1s[i] >= bestF1 - tolerance && (chosen < 0 || times[i] < times[chosen]))
+                chosen = i;
+
+        classifier.setEasyFirstMaxCandidates(thresholds[chosen]);
+        System.err.println("Chose threshold " + thresholds[chosen]);
+        return thresholds[chosen];
+    }
+}
@@ -0,0 +1,150 @@
+package spinach.classify;
+
+import spinach.argumentclassifier.DecodeContext;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.TokenSentence;
+import spinach.sentence.TokenSentenceAndPredicates;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses a batch of sentences on a fork-join pool.
+ * <p/>
+ * Predicates are identified first, for all the sentences at once. Argument classification,
+ * which costs roughly the length of a sentence times its number of predicates, then starts
+ * with the most expensive sentences, so that a long sentence started last does not hold up
+ * the whole batch. Each worker keeps its own decode context for all the sentences it classifies.
+ */
+final class BatchParser {
+
+    private static final int PREDICATE_BATCH_SIZE = 16;
+
+    private BatchParser() {
+    }
+
+    /**
+     * Parses a list of sentences.
+     *
+     * @param classifier classifier to parse the sentences with
+     * @param sentences  sentences to parse
+     * @param pool       pool to parse the sentences on
+     * @return parsed framesets, in the same order as the sentences
+     */
+    static List<SemanticFrameSet> parseAll(SemanticClassifier classifier, List<? extends TokenSentence> sentences,
+                                           ForkJoinPool pool) {
+        int numSentences = sentences.size();
+        if (numSentences == 0)
+            return new ArrayList<SemanticFrameSet>();
+
+        TokenSentence[] input = sentences.toArray(new TokenSentence[numSentences]);
+        TokenSentenceAndPredicates[] withPredicates = new TokenSentenceAndPredicates[numSentences];
+        SemanticFrameSet[] parsed = new SemanticFrameSet[numSentences];
+
+        pool.invoke(new PredicateTask(classifier, input, withPredicates, 0, numSentences));
+
+        Integer[] order = costOrder(input, withPredicates);
+        int numWorkers = Math.min(pool.getParallelism(), numSentences);
+        pool.invoke(new ArgumentStage(classifier, withPredicates, parsed, order, numWorkers));
+
+        return Arrays.asList(parsed);
+    }
+
+    /*
+    Returns the indices of the sentences, from the most to the least expensive to classify arguments for.
+     */
+    private static Integer[] costOrder(TokenSentence[] sentences, TokenSentenceAndPredicates[] withPredicates) {
+        final long[] costs = new long[sentences.length];
+        Integer[] order = new Integer[sentences.length];
+        for (int i = 0; i < sentences.length; i++) {
+            costs[i] = (long) sentences[i].size() * withPredicates[i].getPredicateList().size();
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return costs[i1] == costs[i2] ? 0 : costs[i1] > costs[i2] ? -1 : 1;
+            }
+        });
+        return order;
+    }
+
+    private static class PredicateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SemanticClassifier classifier;
+        private final TokenSentence[] sentences;
+        private final TokenSentenceAndPredicates[] withPredicates;
+        private final int start;
+        private final int end;
+
+        PredicateTask(SemanticClassifier classifier, TokenSentence[] sentences,
+                      TokenSentenceAndPredicates[] withPredicates, int start, int end) {
+            this.classifier = classifier;
+            this.sentences = sentences;
+            this.withPredicates = withPredicates;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > PREDICATE_BATCH_SIZE) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new PredicateTask(classifier, sentences, withPredicates, start, middle),
+                        new PredicateTask(classifier, sentences, withPredicates, middle, end));
+                return;
+            }
+
+            for (int i = start; i < end; i++)
+                withPredicates[i] = classifier.predParse(sentences[i]);
+        }
+    }
+
+    private static class ArgumentStage extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SemanticClassifier classifier;
+        private final TokenSentenceAndPredicates[] withPredicates;
+        private final SemanticFrameSet[] parsed;
+        private final Integer[] order;
+        private final int numWorkers;
+
+        ArgumentStage(SemanticClassifier classifier, TokenSentenceAndPredicates[] withPredicates,
+                      SemanticFrameSet[] parsed, Integer[] order, int numWorkers) {
+            this.classifier = classifier;
+            this.withPredicates = withPredicates;
+            this.parsed = parsed;
+            this.order = order;
+            this.numWorkers = numWorkers;
+        }
+
+        @Override
+        protected void compute() {
+            final AtomicInteger next = new AtomicInteger();
+
+            List<RecursiveAction> workers = new ArrayList<RecursiveAction>(numWorkers);
+            for (int w = 0; w < numWorkers; w++) {
+                workers.add(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        DecodeContext context = classifier.newDecodeContext();
+                        for (int n = next.getAndIncrement(); n < order.length; n = next.getAndIncrement()) {
+                            int i = order[n];
+                            parsed[i] = classifier.argParse(withPredicates[i], context);
+                        }
+                    }
+                });
+            }
+
+            invokeAll(workers);
+        }
+    }
+}
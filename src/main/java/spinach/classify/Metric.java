@@ -1,16 +1,14 @@
 package spinach.classify;
 
-import com.google.common.collect.Sets;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.stats.Counters;
+import spinach.sentence.RelationLabels;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * A class that generates statistics for classifiers, i.e.
@@ -33,7 +31,7 @@ public class Metric {
     private Counter<String> predictedArguments = new ClassicCounter<String>();
     private Counter<String> goldArguments = new ClassicCounter<String>();
 
-    private final Collection<SemanticFrameSet> goldFrameSets;
+    private final Iterable<SemanticFrameSet> goldFrameSets;
     private final GEN gen;
 
     /**
@@ -42,7 +40,7 @@ public class Metric {
      * @param g             predicate/argument classifier for token sentence
      * @param goldFrameSets gold SemanticFrameSets to compare GEN output against
      */
-    public Metric(GEN g, Collection<SemanticFrameSet> goldFrameSets) {
+    public Metric(GEN g, Iterable<SemanticFrameSet> goldFrameSets) {
         gen = g;
         this.goldFrameSets = goldFrameSets;
         recalculateScores();
@@ -78,34 +76,22 @@ public class Metric {
 
             if (PREDICTED_PRED_DURING_ARG_TESTING) {
                 for (Token predictedPredicate : predictedPredicates)
-                    for (Map.Entry<Token, String> entry : predictedFrameSet.argumentsOf(predictedPredicate).entrySet())
-                        predictedArguments.incrementCount(entry.getValue());
+                    countArguments(predictedFrameSet, predictedPredicate, predictedArguments);
 
                 for (Token goldPredicate : goldPredicates)
-                    for (Map.Entry<Token, String> entry : goldFrameSet.argumentsOf(goldPredicate).entrySet())
-                        goldArguments.incrementCount(entry.getValue());
+                    countArguments(goldFrameSet, goldPredicate, goldArguments);
 
                 for (Token goldAndPredictedPredicate : goldAndPredictedPredicates)
-                    for (Map.Entry<Token, String> correctEntry :
-                            Sets.intersection(goldFrameSet.argumentsOf(goldAndPredictedPredicate).entrySet(),
-                                    predictedFrameSet.argumentsOf(goldAndPredictedPredicate).entrySet()))
-                        correctArguments.incrementCount(correctEntry.getValue());
+                    countCorrectArguments(goldFrameSet, predictedFrameSet, goldAndPredictedPredicate);
 
             } else {
 
                 SemanticFrameSet argPredictedFrameSet = gen.argParse(goldFrameSet);
 
                 for (Token goldPredicate : goldPredicates) {
-                    for (Map.Entry<Token, String> entry : goldFrameSet.argumentsOf(goldPredicate).entrySet())
-                        goldArguments.incrementCount(entry.getValue());
-
-                    for (Map.Entry<Token, String> entry : argPredictedFrameSet.argumentsOf(goldPredicate).entrySet())
-                        predictedArguments.incrementCount(entry.getValue());
-
-                    for (Map.Entry<Token, String> correctEntry :
-                            Sets.intersection(goldFrameSet.argumentsOf(goldPredicate).entrySet(),
-                                    predictedFrameSet.argumentsOf(goldPredicate).entrySet()))
-                        correctArguments.incrementCount(correctEntry.getValue());
+                    countArguments(goldFrameSet, goldPredicate, goldArguments);
+                    countArguments(argPredictedFrameSet, goldPredicate, predictedArguments);
+                    countCorrectArguments(goldFrameSet, predictedFrameSet, goldPredicate);
                 }
             }
 
@@ -115,6 +101,36 @@ public class Metric {
         }
     }
 
+    /**
+     * Counts the labels of the arguments of some predicate.
+     */
+    private static void countArguments(SemanticFrameSet frameSet, Token predicate, Counter<String> labelCounts) {
+        if (frameSet.numArgumentsOf(predicate) == 0)
+            return;
+
+        for (Token argument : frameSet) {
+            int relationId = frameSet.relationIdAt(predicate.sentenceIndex, argument.sentenceIndex);
+            if (relationId != RelationLabels.NONE)
+                labelCounts.incrementCount(RelationLabels.labelOf(relationId));
+        }
+    }
+
+    /**
+     * Counts the labels of the arguments of some predicate that are the same in both framesets.
+     */
+    private void countCorrectArguments(SemanticFrameSet goldFrameSet, SemanticFrameSet predictedFrameSet,
+                                       Token predicate) {
+        if (goldFrameSet.numArgumentsOf(predicate) == 0 || predictedFrameSet.numArgumentsOf(predicate) == 0)
+            return;
+
+        for (Token argument : goldFrameSet) {
+            int goldRelationId = goldFrameSet.relationIdAt(predicate.sentenceIndex, argument.sentenceIndex);
+            if (goldRelationId != RelationLabels.NONE &&
+                    goldRelationId == predictedFrameSet.relationIdOf(predicate, argument))
+                correctArguments.incrementCount(RelationLabels.labelOf(goldRelationId));
+        }
+    }
+
     /**
      * Gives the precision of the predicate classifier,
      * i.e. correct predicates / predicted predicates
@@ -0,0 +1,193 @@
+package spinach.classify;
+
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+import spinach.sentence.TokenSentence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of parsed sentences, so that sentences that are seen again
+ * (boilerplate, templated text, retried requests) are not parsed again.
+ * <p/>
+ * Sentences are keyed by a hash of the form, lemma, part of speech, head and head relation
+ * of each of their tokens; a hit is only returned if the tokens are actually equal.
+ * Once the cache is full, the least recently used sentence is evicted.
+ * <p/>
+ * Cached framesets are never handed out; every lookup returns a fresh copy,
+ * so callers may modify the framesets they get without affecting the cache.
+ * The cache may be used by many threads at once.
+ */
+public class ParseCache {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int capacity;
+    private final Map<Long, CachedParse> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static class CachedParse {
+        final List<Token> tokens;
+        final SemanticFrameSet frameSet;
+
+        CachedParse(List<Token> tokens, SemanticFrameSet frameSet) {
+            this.tokens = tokens;
+            this.frameSet = frameSet;
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity maximum number of sentences to keep
+     */
+    public ParseCache(final int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Cache capacity must be positive");
+
+        this.capacity = capacity;
+        entries = new LinkedHashMap<Long, CachedParse>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedParse> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up the parse of a sentence.
+     *
+     * @param sentence sentence to look up
+     * @return copy of the cached parse, or null if the sentence is not cached
+     */
+    public SemanticFrameSet get(TokenSentence sentence) {
+        List<Token> tokens = tokensOf(sentence);
+        CachedParse entry;
+        synchronized (entries) {
+            entry = entries.get(hash(tokens));
+        }
+
+        if (entry == null || !entry.tokens.equals(tokens)) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return copyOf(entry.frameSet);
+    }
+
+    /**
+     * Caches the parse of a sentence, replacing any parse cached under the same key.
+     *
+     * @param sentence sentence that was parsed
+     * @param parsed   parse of the sentence; the cache keeps its own copy
+     */
+    public void put(TokenSentence sentence, SemanticFrameSet parsed) {
+        List<Token> tokens = tokensOf(sentence);
+        CachedParse entry = new CachedParse(tokens, copyOf(parsed));
+        synchronized (entries) {
+            entries.put(hash(tokens), entry);
+        }
+    }
+
+    /**
+     * Removes every cached sentence. The hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the number of sentences currently cached.
+     *
+     * @return number of cached sentences
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of sentences this cache keeps.
+     *
+     * @return capacity of the cache
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of lookups that found a cached parse.
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups that found no cached parse.
+     *
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /*
+    Copying a frameset is cheap, as relations are only duplicated once either copy is modified.
+    Synchronized since copying marks the relations of the original as shared.
+     */
+    private static SemanticFrameSet copyOf(SemanticFrameSet frameSet) {
+        synchronized (frameSet) {
+            return frameSet.copy();
+        }
+    }
+
+    private static List<Token> tokensOf(TokenSentence sentence) {
+        List<Token> tokens = new ArrayList<Token>();
+        for (Token t : sentence)
+            tokens.add(t);
+        return tokens;
+    }
+
+    /*
+    64-bit FNV-1a hash of the columns of every token.
+     */
+    private static long hash(List<Token> tokens) {
+        long hash = FNV_OFFSET_BASIS;
+        for (Token t : tokens) {
+            hash = hash(hash, t.form);
+            hash = hash(hash, t.lemma);
+            hash = hash(hash, t.pos);
+            hash = hash(hash, t.syntacticHeadRelation);
+            hash = hash(hash, t.headSentenceIndex);
+            hash = hash(hash, t.sentenceIndex);
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String s) {
+        for (int i = 0; i < s.length(); i++)
+            hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+        return hash(hash, s.length());
+    }
+
+    private static long hash(long hash, int n) {
+        for (int shift = 0; shift < 32; shift += 8)
+            hash = (hash ^ ((n >>> shift) & 0xff)) * FNV_PRIME;
+        return hash;
+    }
+}
@@ -0,0 +1,241 @@
+package spinach.classify;
+
+import spinach.argumentclassifier.DecodeContext;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.TokenSentence;
+import spinach.sentence.TokenSentenceAndPredicates;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses a stream of sentences with a two stage pipeline: a pool of threads that
+ * identify predicates, feeding a pool of threads that classify arguments through
+ * a bounded queue. Since argument classification is much more expensive than
+ * predicate identification, the argument stage would normally be given most of the threads.
+ * <p/>
+ * Parsed sentences are passed on in the same order as they were read. At most a fixed
+ * number of sentences are being parsed or waiting to be passed on at any time,
+ * so a slow sentence does not let the other sentences pile up in memory.
+ */
+public class PipelinedParser {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final SemanticClassifier classifier;
+    private final int predicateThreads;
+    private final int argumentThreads;
+    private final int queueCapacity;
+
+    /**
+     * Receives the parsed sentences of a pipeline, in order.
+     * Calls are never made by more than one thread at a time.
+     */
+    public interface Sink {
+
+        /**
+         * Receives the next parsed sentence.
+         *
+         * @param frameSet parsed sentence
+         * @throws IOException if the sentence cannot be handled; this stops the pipeline
+         */
+        public void accept(SemanticFrameSet frameSet) throws IOException;
+    }
+
+    /**
+     * Creates a pipelined parser.
+     *
+     * @param classifier       trained classifier to parse sentences with
+     * @param predicateThreads number of threads identifying predicates
+     * @param argumentThreads  number of threads classifying arguments
+     * @param queueCapacity    number of sentences that can wait before each stage
+     */
+    public PipelinedParser(SemanticClassifier classifier, int predicateThreads, int argumentThreads,
+                           int queueCapacity) {
+        if (predicateThreads < 1 || argumentThreads < 1 || queueCapacity < 1)
+            throw new IllegalArgumentException("Thread counts and queue capacity must be positive");
+
+        this.classifier = classifier;
+        this.predicateThreads = predicateThreads;
+        this.argumentThreads = argumentThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Parses every sentence from some input, passing the parsed sentences to a sink
+     * in the order they were read. Returns once every sentence has been passed on.
+     * <p/>
+     * If parsing a sentence fails or the sink throws an exception, the pipeline is
+     * stopped, and the exception is rethrown.
+     *
+     * @param sentences sentences to parse
+     * @param sink      receiver of the parsed sentences
+     * @throws IOException          if the sink fails
+     * @throws InterruptedException if the calling thread is interrupted while waiting for the pipeline
+     */
+    public void parse(Iterator<? extends TokenSentence> sentences, Sink sink)
+            throws IOException, InterruptedException {
+        new Run(sink).execute(sentences);
+    }
+
+    /**
+     * A sentence moving through the pipeline.
+     */
+    private static class Item {
+        final int index;
+        final TokenSentence sentence;
+        TokenSentenceAndPredicates withPredicates;
+
+        Item(int index, TokenSentence sentence) {
+            this.index = index;
+            this.sentence = sentence;
+        }
+    }
+
+    private static final Item POISON = new Item(-1, null);
+
+    /**
+     * The state of a single call to parse.
+     */
+    private class Run {
+
+        private final Sink sink;
+
+        private final BlockingQueue<Item> predicateQueue = new ArrayBlockingQueue<Item>(queueCapacity);
+        private final BlockingQueue<Item> argumentQueue = new ArrayBlockingQueue<Item>(queueCapacity);
+        private final Semaphore inFlight = new Semaphore(2 * queueCapacity + predicateThreads + argumentThreads);
+
+        private final Map<Integer, SemanticFrameSet> finished = new HashMap<Integer, SemanticFrameSet>();
+        private int nextToEmit;
+
+        private final AtomicInteger runningPredicateWorkers = new AtomicInteger(predicateThreads);
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private final List<Thread> workers = new ArrayList<Thread>();
+
+        Run(Sink sink) {
+            this.sink = sink;
+        }
+
+        void execute(Iterator<? extends TokenSentence> sentences) throws IOException, InterruptedException {
+            for (int i = 0; i < predicateThreads; i++)
+                workers.add(new Thread(new PredicateWorker(), "pipeline-predicates-" + i));
+            for (int i = 0; i < argumentThreads; i++)
+                workers.add(new Thread(new ArgumentWorker(), "pipeline-arguments-" + i));
+            for (Thread worker : workers) {
+                worker.setDaemon(true);
+                worker.start();
+            }
+
+            boolean completed = false;
+            try {
+                int index = 0;
+                while (failure.get() == null && sentences.hasNext()) {
+                    Item item = new Item(index++, sentences.next());
+                    while (!inFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS))
+                        if (failure.get() != null)
+                            break;
+                    offer(predicateQueue, item);
+                }
+
+                for (int i = 0; i < predicateThreads; i++)
+                    offer(predicateQueue, POISON);
+
+                for (Thread worker : workers)
+                    worker.join();
+                completed = true;
+            } finally {
+                if (!completed)
+                    stopWorkers();
+            }
+
+            rethrowFailure();
+        }
+
+        /*
+        Puts an item in a queue, unless the pipeline has failed.
+         */
+        private void offer(BlockingQueue<Item> queue, Item item) throws InterruptedException {
+            while (failure.get() == null)
+                if (queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS))
+                    return;
+        }
+
+        private void fail(Throwable t) {
+            if (failure.compareAndSet(null, t))
+                stopWorkers();
+        }
+
+        private void stopWorkers() {
+            for (Thread worker : workers)
+                if (worker != Thread.currentThread())
+                    worker.interrupt();
+        }
+
+        private void rethrowFailure() throws IOException {
+            Throwable t = failure.get();
+            if (t == null)
+                return;
+            if (t instanceof IOException)
+                throw (IOException) t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new RuntimeException(t);
+        }
+
+        /*
+        Passes on every parsed sentence that is next in order.
+         */
+        private synchronized void finish(Item item, SemanticFrameSet parsed) throws IOException {
+            finished.put(item.index, parsed);
+            for (SemanticFrameSet next = finished.remove(nextToEmit); next != null;
+                 next = finished.remove(nextToEmit)) {
+                sink.accept(next);
+                nextToEmit++;
+                inFlight.release();
+            }
+        }
+
+        private class PredicateWorker implements Runnable {
+            @Override
+            public void run() {
+                try {
+                    for (Item item = predicateQueue.take(); item != POISON; item = predicateQueue.take()) {
+                        item.withPredicates = classifier.predParse(item.sentence);
+                        offer(argumentQueue, item);
+                    }
+
+                    if (runningPredicateWorkers.decrementAndGet() == 0)
+                        for (int i = 0; i < argumentThreads; i++)
+                            offer(argumentQueue, POISON);
+                } catch (InterruptedException e) {
+                    //pipeline was stopped
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }
+
+        private class ArgumentWorker implements Runnable {
+            @Override
+            public void run() {
+                DecodeContext context = classifier.newDecodeContext();
+                try {
+                    for (Item item = argumentQueue.take(); item != POISON; item = argumentQueue.take())
+                        finish(item, classifier.argParse(item.withPredicates, context));
+                } catch (InterruptedException e) {
+                    //pipeline was stopped
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }
+    }
+}
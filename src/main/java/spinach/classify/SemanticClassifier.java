@@ -3,17 +3,28 @@ package spinach.classify;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import spinach.argumentclassifier.ArgumentClassifier;
+import spinach.argumentclassifier.DecodeContext;
 import spinach.argumentclassifier.featuregen.ExtensibleFeatureGenerator;
+import spinach.argumentclassifier.featuregen.FeatureGeneratorProfiler;
 import spinach.argumentclassifier.featuregen.IndividualFeatureGenerator;
+import spinach.classifier.FeatureKeySink;
 import spinach.predicateclassifier.PredicateClassifier;
 import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
 import spinach.sentence.TokenSentence;
 import spinach.sentence.TokenSentenceAndPredicates;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A classifier, using Argument and PredicateClassifiers, that classifies semantic roles in a sentence.
+ * <p/>
+ * Parsing keeps no state in the classifier, so once a classifier has been trained or loaded,
+ * {@link #parse}, {@link #predParse} and {@link #argParse} may be called from many threads at once.
+ * Training must not run at the same time as parsing.
  */
 public abstract class SemanticClassifier implements GEN {
 
@@ -22,10 +33,25 @@ public abstract class SemanticClassifier implements GEN {
 
     private transient ExtensibleFeatureGenerator featureGenerator;
 
-    protected transient Collection<SemanticFrameSet> trainingFrames;
-    protected transient Collection<SemanticFrameSet> testingFrames;
+    protected transient Iterable<SemanticFrameSet> trainingFrames;
+    protected transient Iterable<SemanticFrameSet> testingFrames;
     protected int epochs;
 
+    private volatile long sentenceBudgetNanos;
+    private final AtomicLong degradedSentences = new AtomicLong();
+    private final AtomicLong degradedPredicates = new AtomicLong();
+
+    private volatile ParseCache parseCache;
+
+    private double featureCostWeight;
+    private double featureCostBudgetNanos;
+    private transient Map<IndividualFeatureGenerator, Double> featureCosts;
+    private transient double baseFeatureCost;
+
+    private int featureSelectionThreads = 1;
+    private transient ExecutorService featureSelectionExecutor;
+    private transient byte[] argumentClassifierSnapshot;
+
     /**
      * Instantiates a new SemanticClassifier.
      *
@@ -34,7 +60,7 @@ public abstract class SemanticClassifier implements GEN {
      * @param trainingFrames      set of semantic framesets to train with
      */
     protected SemanticClassifier(ArgumentClassifier argumentClassifier, PredicateClassifier predicateClassifier,
-                                 Collection<SemanticFrameSet> trainingFrames) {
+                                 Iterable<SemanticFrameSet> trainingFrames) {
         this.argumentClassifier = argumentClassifier;
         this.predicateClassifier = predicateClassifier;
         this.trainingFrames = trainingFrames;
@@ -42,12 +68,104 @@ public abstract class SemanticClassifier implements GEN {
 
     @Override
     public SemanticFrameSet parse(TokenSentence sentence) {
-        return argParse(predParse(sentence));
+        ParseCache cache = parseCache;
+        if (cache == null)
+            return argParse(predParse(sentence));
+
+        SemanticFrameSet frameSet = cache.get(sentence);
+        if (frameSet == null) {
+            frameSet = argParse(predParse(sentence));
+            if (frameSet.numDegradedPredicates() == 0)   //a sentence that ran out of time may do better next time
+                cache.put(sentence, frameSet);
+        }
+        return frameSet;
+    }
+
+    /**
+     * Sets a cache of parsed sentences for {@link #parse} to look sentences up in
+     * before parsing them. The cache must be cleared if this classifier is retrained.
+     *
+     * @param parseCache cache to use, or null to parse every sentence
+     */
+    public void setParseCache(ParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
+    /**
+     * Returns the cache of parsed sentences used by {@link #parse}.
+     *
+     * @return cache in use, or null if there is none
+     */
+    public ParseCache getParseCache() {
+        return parseCache;
     }
 
     @Override
     public SemanticFrameSet argParse(TokenSentenceAndPredicates sentence) {
-        return argumentClassifier.framesWithArguments(sentence);
+        return argParse(sentence, newDecodeContext());
+    }
+
+    /**
+     * Given a sentence with predicates, determines the arguments of the predicates,
+     * keeping the state of the classification in some context.
+     *
+     * @param sentence sentence w/ identified predicates
+     * @param context  context to keep classification state in, owned by the calling thread
+     * @return sentence w/ identified arguments
+     */
+    public SemanticFrameSet argParse(TokenSentenceAndPredicates sentence, DecodeContext context) {
+        SemanticFrameSet frameSet = argumentClassifier.framesWithArguments(sentence, context);
+
+        int numDegraded = frameSet.numDegradedPredicates();
+        if (numDegraded > 0) {
+            degradedSentences.incrementAndGet();
+            degradedPredicates.addAndGet(numDegraded);
+        }
+
+        return frameSet;
+    }
+
+    /**
+     * Creates a context for classifying arguments with {@link #argParse(TokenSentenceAndPredicates, DecodeContext)},
+     * with this classifier's per-sentence time budget.
+     *
+     * @return new decode context
+     */
+    public DecodeContext newDecodeContext() {
+        DecodeContext context = new DecodeContext();
+        context.setBudget(sentenceBudgetNanos, TimeUnit.NANOSECONDS);
+        return context;
+    }
+
+    /**
+     * Limits how long classifying the arguments of a single sentence may take when parsing.
+     * Once a sentence runs out of time, the rest of it is classified with a cheaper strategy,
+     * if the argument classifier has one, and the predicates classified that way are marked
+     * as degraded (see {@link SemanticFrameSet#isDegraded}). Training is never limited.
+     *
+     * @param budget time allowed for each sentence, or 0 for no limit
+     * @param unit   unit of the budget
+     */
+    public void setSentenceBudget(long budget, TimeUnit unit) {
+        sentenceBudgetNanos = unit.toNanos(budget);
+    }
+
+    /**
+     * Returns the number of parsed sentences that ran out of time and had predicates degraded.
+     *
+     * @return number of degraded sentences
+     */
+    public long getDegradedSentenceCount() {
+        return degradedSentences.get();
+    }
+
+    /**
+     * Returns the number of predicates, over all parsed sentences, that were degraded after running out of time.
+     *
+     * @return number of degraded predicates
+     */
+    public long getDegradedPredicateCount() {
+        return degradedPredicates.get();
     }
 
     @Override
@@ -55,11 +173,46 @@ public abstract class SemanticClassifier implements GEN {
         return predicateClassifier.sentenceWithPredicates(sentence);
     }
 
+    /**
+     * Parses a batch of sentences in parallel on the common fork-join pool.
+     *
+     * @param sentences sentences to parse
+     * @return SemanticFrameSets for the sentences, in the same order as the sentences
+     * @see #parseAll(java.util.List, java.util.concurrent.ForkJoinPool)
+     */
+    public List<SemanticFrameSet> parseAll(List<? extends TokenSentence> sentences) {
+        return parseAll(sentences, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a batch of sentences in parallel on some fork-join pool.
+     * The predicates of every sentence are found first; arguments are then classified
+     * starting with the sentences that are most expensive to classify (the longest sentences
+     * with the most predicates), so that the batch is not held up by a long sentence at its end.
+     *
+     * @param sentences sentences to parse
+     * @param pool      pool to parse the sentences on
+     * @return SemanticFrameSets for the sentences, in the same order as the sentences
+     */
+    public List<SemanticFrameSet> parseAll(List<? extends TokenSentence> sentences, ForkJoinPool pool) {
+        return BatchParser.parseAll(this, sentences, pool);
+    }
+
     /**
      * Using the stored training framesets, train the argument classifier.
      */
     public abstract void trainArgumentClassifier();
 
+    /**
+     * Creates a classifier of the same kind as this one, trained the same way on the same training framesets,
+     * that classifies arguments with another argument classifier and shares this one's predicate classifier.
+     * Training its argument classifier must leave the predicate classifier alone.
+     *
+     * @param argumentClassifier argument classifier for the new classifier to use
+     * @return new classifier
+     */
+    protected abstract SemanticClassifier withArgumentClassifier(ArgumentClassifier argumentClassifier);
+
     /**
      * Using the stored training framesets, train the predicate classifier.
      */
@@ -67,16 +220,61 @@ public abstract class SemanticClassifier implements GEN {
 
     /**
      * Set the training framesets to use for training classifiers.
+     * The framesets may be streamed (e.g. from {@link spinach.CorpusUtils#streamCorpus(String)}),
+     * in which case they are iterated over once per epoch.
      *
-     * @param trainingFrames collection of semantic framesets
+     * @param trainingFrames semantic framesets
      */
-    public void setTrainingFrames(Collection<SemanticFrameSet> trainingFrames) {
+    public void setTrainingFrames(Iterable<SemanticFrameSet> trainingFrames) {
         this.trainingFrames = trainingFrames;
     }
 
+    /**
+     * Makes feature generator training trade F1 for speed: a set of feature generators is scored
+     * by its F1, less this weight times the time its features take to generate, in microseconds
+     * per argument candidate. The time each feature generator takes is measured on the testing frames.
+     *
+     * @param weight F1 given up for each microsecond of feature generation, or 0 to score by F1 alone
+     */
+    public void setFeatureCostWeight(double weight) {
+        if (weight < 0)
+            throw new IllegalArgumentException("Feature cost weight must not be negative");
+        featureCostWeight = weight;
+    }
+
+    /**
+     * Limits the feature generators that feature generator training may choose to those whose features,
+     * along with the base argument features, take no more than some time to generate per argument
+     * candidate. Sets of feature generators over the budget are never trained.
+     *
+     * @param budget time allowed per argument candidate, or 0 for no limit
+     * @param unit   unit of the budget
+     */
+    public void setFeatureCostBudget(long budget, TimeUnit unit) {
+        featureCostBudgetNanos = unit.toNanos(budget);
+    }
+
+    /**
+     * Sets the number of sets of feature generators that feature generator training may train and score
+     * at once. Each is trained on its own copy of the argument classifier, so each thread needs
+     * as much memory as the argument classifier does.
+     *
+     * @param numThreads number of threads to train with
+     */
+    public void setFeatureSelectionThreads(int numThreads) {
+        if (numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be positive");
+        featureSelectionThreads = numThreads;
+    }
+
     /**
      * Trains the argument feature generator for this object's ArgumentClassifier--
      * enables features that increase the F1 of the structured classifier.
+     * If a feature cost weight or budget is set, the cost of generating features is taken into account.
+     * <p/>
+     * Each set of feature generators tried is trained and scored on a copy of the argument classifier,
+     * as many at once as there are feature selection threads. Once the best set is found,
+     * this object's argument classifier is trained with it.
      *
      * @param trainingFrames SemanticFrameSets with known good semantic data, to train on
      * @param testingFrames  SemanticFrameSets with known good semantic data, to test against
@@ -92,8 +290,33 @@ public abstract class SemanticClassifier implements GEN {
         }
         featureGenerator = (ExtensibleFeatureGenerator) argumentClassifier.getFeatureGenerator();
 
+        featureCosts = null;
+        if (featureCostWeight > 0 || featureCostBudgetNanos > 0)
+            measureFeatureCosts(testingFrames);
+
         featureGenerator.clearFeatures();
+        calculatedF1s.clear();
+        argumentClassifierSnapshot = serialize(argumentClassifier);
+        featureSelectionExecutor = Executors.newFixedThreadPool(featureSelectionThreads);
+        try {
+            Set<IndividualFeatureGenerator> featureGeneratorSet = selectFeatureGenerators();
+
+            System.err.print("Final feature generators: ");
+            for (IndividualFeatureGenerator f : featureGeneratorSet)
+                System.err.print(f.identifier + " ");
+            System.err.println();
+
+            argumentClassifier.reset();
+            featureGenerator.setEnabledFeatureGenerators(featureGeneratorSet);
+            trainArgumentClassifier();
+        } finally {
+            featureSelectionExecutor.shutdownNow();
+            featureSelectionExecutor = null;
+            argumentClassifierSnapshot = null;
+        }
+    }
 
+    private Set<IndividualFeatureGenerator> selectFeatureGenerators() {
         System.err.println("S = {f_0, f_1, ..., f_k}, a random subset of FT");
         Random random = new Random(0);
 
@@ -110,6 +333,9 @@ public abstract class SemanticClassifier implements GEN {
             }
         }
 
+        if (featureCosts != null && featureCostBudgetNanos > 0)
+            fitFeatureCostBudget(featureGeneratorSet);
+
         while (true) {
 
             System.err.println("C_r = recruitMore(s)");
@@ -125,6 +351,7 @@ public abstract class SemanticClassifier implements GEN {
             System.err.println("End shakeOff");
 
             System.err.println("if scr(M(S)) ≥ scr(M(S′)) then return S");
+            startScoring(Collections.singleton(updatedFeatureGeneratorSet));
             if (argumentTrainAndScore(featureGeneratorSet) > argumentTrainAndScore(updatedFeatureGeneratorSet))
                 break;
 
@@ -132,15 +359,82 @@ public abstract class SemanticClassifier implements GEN {
             featureGeneratorSet = updatedFeatureGeneratorSet;
         }
 
-        System.err.print("Final feature generators: ");
-        for (IndividualFeatureGenerator f : featureGeneratorSet)
-            System.err.print(f.identifier + " ");
-        System.err.println();
+        return featureGeneratorSet;
+    }
+
+    /*
+    F1 of each set of feature generators trained so far, or being trained. A set is only
+    ever trained once: whichever thread first asks for it puts in the task that trains it.
+     */
+    private final ConcurrentMap<Set<IndividualFeatureGenerator>, Future<Double>> calculatedF1s =
+            new ConcurrentHashMap<Set<IndividualFeatureGenerator>, Future<Double>>();
+
+    /*
+    Times every feature generator, on each argument candidate the classifier considers in some frames,
+    generating keys as decoding does. Only time is measured, so that counting features does not weigh
+    most on the generators with the most features. The first pass over the frames only warms up.
+     */
+    private void measureFeatureCosts(List<SemanticFrameSet> frames) {
+        FeatureGeneratorProfiler originalProfiler = featureGenerator.getProfiler();
+        FeatureGeneratorProfiler profiler = new FeatureGeneratorProfiler(1, true);
+        featureGenerator.setEnabledFeatureGenerators(featureGenerator.featureGeneratorSet());
+        featureGenerator.setProfiler(profiler);
+
+        FeatureKeySink sink = new FeatureKeySink();
+        for (int pass = 0; pass < 2; pass++) {
+            profiler.reset();
+            for (SemanticFrameSet frameSet : frames) {
+                for (Token predicate : frameSet.getPredicateList()) {
+                    for (Token argument : argumentClassifier.candidatesOf(frameSet, predicate))
+                        featureGenerator.keysFrom(frameSet, argument, predicate, sink);
+                }
+            }
+        }
+        featureGenerator.setProfiler(originalProfiler);
+
+        featureCosts = new HashMap<IndividualFeatureGenerator, Double>();
+        Set<String> identifiers = new HashSet<String>();
+        for (IndividualFeatureGenerator generator : featureGenerator.featureGeneratorSet()) {
+            featureCosts.put(generator, profiler.meanNanos(generator.identifier));
+            identifiers.add(generator.identifier);
+        }
+        baseFeatureCost = 0;
+        for (String part : profiler.parts())
+            if (!identifiers.contains(part))
+                baseFeatureCost += profiler.meanNanos(part);
+
+        profiler.printReport(System.err);
+    }
+
+    /*
+    Every set over the budget scores the same, so a search starting from one would never move;
+    the most expensive feature generators are dropped until the set is within the budget.
+     */
+    private void fitFeatureCostBudget(Set<IndividualFeatureGenerator> featureGenerators) {
+        while (!featureGenerators.isEmpty() && featureCost(featureGenerators) > featureCostBudgetNanos) {
+            IndividualFeatureGenerator mostExpensive = null;
+            for (IndividualFeatureGenerator generator : featureGenerators)
+                if (mostExpensive == null || featureCosts.get(generator) > featureCosts.get(mostExpensive))
+                    mostExpensive = generator;
+            featureGenerators.remove(mostExpensive);
+        }
     }
 
-    private Map<Set<IndividualFeatureGenerator>, Double> calculatedF1s =
-            new HashMap<Set<IndividualFeatureGenerator>, Double>();
+    /*
+    Time taken to generate the features of some feature generators, and the base features,
+    in nanoseconds per argument candidate.
+     */
+    private double featureCost(Set<IndividualFeatureGenerator> featureGenerators) {
+        double cost = baseFeatureCost;
+        for (IndividualFeatureGenerator generator : featureGenerators)
+            cost += featureCosts.get(generator);
+        return cost;
+    }
 
+    /*
+    Scores a set of feature generators by F1, less the cost of generating features if there is a
+    cost weight; sets over the cost budget score negative infinity, without being trained.
+     */
     private double argumentTrainAndScore(Set<IndividualFeatureGenerator> featureGenerators) {
 
         System.err.print("Feature generators: ");
@@ -148,37 +442,134 @@ public abstract class SemanticClassifier implements GEN {
             System.err.print(f.identifier + " ");
         System.err.println();
 
-        if (calculatedF1s.containsKey(featureGenerators)) {
-            double f1 = calculatedF1s.get(featureGenerators);
-            System.err.println("Previously calculated F1: " + f1);
-            return f1;
+        if (featureCosts == null)
+            return argumentTrainAndF1(featureGenerators);
+
+        double cost = featureCost(featureGenerators);
+        System.err.format("Feature cost: %.0f ns per argument candidate%n", cost);
+        if (isOverFeatureCostBudget(featureGenerators)) {
+            System.err.println("Over feature cost budget");
+            return Double.NEGATIVE_INFINITY;
         }
 
-        argumentClassifier.reset();
-        featureGenerator.setEnabledFeatureGenerators(featureGenerators);
+        double score = argumentTrainAndF1(featureGenerators) - featureCostWeight * cost / 1000;
+        System.err.println("Score: " + score);
+        return score;
+    }
+
+    private boolean isOverFeatureCostBudget(Set<IndividualFeatureGenerator> featureGenerators) {
+        return featureCosts != null && featureCostBudgetNanos > 0
+                && featureCost(featureGenerators) > featureCostBudgetNanos;
+    }
+
+    /*
+    Starts training and scoring sets of feature generators in the background, so that
+    they can be trained at the same time; argumentTrainAndScore() waits for their scores.
+     */
+    private void startScoring(Collection<? extends Set<IndividualFeatureGenerator>> featureGeneratorSets) {
+        for (Set<IndividualFeatureGenerator> featureGenerators : featureGeneratorSets)
+            if (!isOverFeatureCostBudget(featureGenerators))
+                f1Of(featureGenerators);
+    }
 
-        trainArgumentClassifier();
+    private Future<Double> f1Of(Set<IndividualFeatureGenerator> featureGenerators) {
+        final Set<IndividualFeatureGenerator> key =
+                Collections.unmodifiableSet(new HashSet<IndividualFeatureGenerator>(featureGenerators));
 
-        double f1 = new Metric(this, testingFrames).argumentF1s().getCount(Metric.TOTAL);
+        Future<Double> f1 = calculatedF1s.get(key);
+        if (f1 == null) {
+            FutureTask<Double> task = new FutureTask<Double>(new Callable<Double>() {
+                @Override
+                public Double call() {
+                    return trainAndMeasureF1(key);
+                }
+            });
+            f1 = calculatedF1s.putIfAbsent(key, task);
+            if (f1 == null) {
+                f1 = task;
+                featureSelectionExecutor.execute(task);
+            }
+        }
+        return f1;
+    }
+
+    private double argumentTrainAndF1(Set<IndividualFeatureGenerator> featureGenerators) {
+        double f1;
+        try {
+            f1 = f1Of(featureGenerators).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training feature generators", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
 
-        calculatedF1s.put(featureGenerators, f1);
         System.err.println("F1: " + f1);
         System.err.println();
 
         return f1;
     }
 
+    /*
+    Trains a copy of the argument classifier, so that no two sets of feature generators
+    share a classifier or a feature generator, and any number can be trained at once.
+     */
+    private double trainAndMeasureF1(Set<IndividualFeatureGenerator> featureGenerators) {
+        ArgumentClassifier copy = (ArgumentClassifier) deserialize(argumentClassifierSnapshot);
+        copy.reset();
+        ((ExtensibleFeatureGenerator) copy.getFeatureGenerator()).setEnabledFeatureGenerators(featureGenerators);
+
+        SemanticClassifier classifier = withArgumentClassifier(copy);
+        classifier.trainArgumentClassifier();
+
+        return new Metric(classifier, testingFrames).argumentF1s().getCount(Metric.TOTAL);
+    }
+
+    private static byte[] serialize(Serializable object) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(object);
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not copy " + object, e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try {
+            return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not copy object", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Could not copy object", e);
+        }
+    }
+
     private Set<IndividualFeatureGenerator> recruitMore(Set<IndividualFeatureGenerator> featureGenerators) {
         System.err.println("Begin recruitMore");
 
         //C_r = {}
         Set<IndividualFeatureGenerator> additions = new HashSet<IndividualFeatureGenerator>();
 
+        Set<IndividualFeatureGenerator> possibleAdditions =
+                Sets.difference(featureGenerator.featureGeneratorSet(), featureGenerators);
+        List<Set<IndividualFeatureGenerator>> candidates = new ArrayList<Set<IndividualFeatureGenerator>>();
+        candidates.add(featureGenerators);
+        for (IndividualFeatureGenerator possibleAddition : possibleAdditions)
+            candidates.add(Sets.union(featureGenerators, Collections.singleton(possibleAddition)));
+        startScoring(candidates);
+
         //p = scr(M(S))
         double originalScore = argumentTrainAndScore(featureGenerators);
 
         //for each f ∈ FT − S
-        for (IndividualFeatureGenerator possibleAddition : featureGenerator.disabledFeatures())
+        for (IndividualFeatureGenerator possibleAddition : possibleAdditions)
             //if p < scr(M(S + {f})) then C_r += {f};
             if (argumentTrainAndScore(Sets.union(featureGenerators, Collections.singleton(possibleAddition)))
                     > originalScore)
@@ -215,6 +606,12 @@ public abstract class SemanticClassifier implements GEN {
             Set<IndividualFeatureGenerator> currentFeatureGenerators =
                     new HashSet<IndividualFeatureGenerator>(originalFeatureGenerators);
 
+            List<Set<IndividualFeatureGenerator>> candidates = new ArrayList<Set<IndividualFeatureGenerator>>();
+            candidates.add(maxFeatureGenerators);
+            for (IndividualFeatureGenerator generator : originalFeatureGenerators)
+                candidates.add(Sets.difference(originalFeatureGenerators, Collections.singleton(generator)));
+            startScoring(candidates);
+
             System.err.println("track scr(M(S - {f})) for each f ∈ S");
             for (IndividualFeatureGenerator generator : originalFeatureGenerators) {
                 currentFeatureGenerators.remove(generator);
@@ -226,6 +623,13 @@ public abstract class SemanticClassifier implements GEN {
             Set<IndividualFeatureGenerator> sortedFeatureGenerators =
                     invertedSortByValues(featureGenAndScoresWO).keySet();
 
+            candidates.clear();
+            List<IndividualFeatureGenerator> remaining =
+                    new ArrayList<IndividualFeatureGenerator>(sortedFeatureGenerators);
+            for (int i = 0; i < remaining.size(); i++)
+                candidates.add(new HashSet<IndividualFeatureGenerator>(remaining.subList(i, remaining.size())));
+            startScoring(candidates);
+
             double sMaxScore = argumentTrainAndScore(maxFeatureGenerators);
 
             System.err.println("while (S = S − {f_0}) != {}");
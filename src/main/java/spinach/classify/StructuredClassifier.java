@@ -43,7 +43,7 @@ public class StructuredClassifier extends SemanticClassifier {
      * @param trainingFrames      set of semantic framesets to train with
      */
     public StructuredClassifier(ArgumentClassifier argumentClassifier, PredicateClassifier predicateClassifier,
-                                int epochs, Collection<SemanticFrameSet> trainingFrames) {
+                                int epochs, Iterable<SemanticFrameSet> trainingFrames) {
         super(argumentClassifier, predicateClassifier, trainingFrames);
         this.epochs = epochs;
     }
@@ -56,10 +56,18 @@ public class StructuredClassifier extends SemanticClassifier {
      * @param trainingFrames      set of semantic framesets to train with
      */
     public StructuredClassifier(ArgumentClassifier argumentClassifier, PredicateClassifier predicateClassifier,
-                                Collection<SemanticFrameSet> trainingFrames) {
+                                Iterable<SemanticFrameSet> trainingFrames) {
         this(argumentClassifier, predicateClassifier, DEFAULT_EPOCHS, trainingFrames);
     }
 
+    @Override
+    protected SemanticClassifier withArgumentClassifier(ArgumentClassifier argumentClassifier) {
+        StructuredClassifier classifier =
+                new StructuredClassifier(argumentClassifier, predicateClassifier, epochs, trainingFrames);
+        classifier.VERBOSE = VERBOSE;
+        return classifier;
+    }
+
     /**
      * Performs a parse with training weights.
      *
@@ -83,7 +91,7 @@ public class StructuredClassifier extends SemanticClassifier {
      *
      * @param goldFrames SemanticFrameSets with known good semantic data
      */
-    public void train(Collection<SemanticFrameSet> goldFrames) {
+    public void train(Iterable<SemanticFrameSet> goldFrames) {
         setTrainingFrames(goldFrames);
         trainingMode = TRAIN_ALL;
         train();
@@ -121,17 +129,22 @@ public class StructuredClassifier extends SemanticClassifier {
             if (VERBOSE) System.out.println();
             System.out.println("Begin training epoch " + (i + 1) + " of " + epochs + " " + df.format(new Date()));
 
-            List<SemanticFrameSet> goldFramesCopy = new ArrayList<SemanticFrameSet>(trainingFrames);
+            Iterable<SemanticFrameSet> goldFrames = trainingFrames;
 
-            Collections.shuffle(goldFramesCopy, new Random(i));
+            //streamed framesets cannot be shuffled, and are trained on in order
+            if (trainingFrames instanceof Collection) {
+                List<SemanticFrameSet> goldFramesCopy =
+                        new ArrayList<SemanticFrameSet>((Collection<SemanticFrameSet>) trainingFrames);
+                Collections.shuffle(goldFramesCopy, new Random(i));
+                goldFrames = goldFramesCopy;
+            }
 
             int j = 0;
-            for (SemanticFrameSet goldFrame : goldFramesCopy) {
+            for (SemanticFrameSet goldFrame : goldFrames) {
                 j++;
                 train(goldFrame);
                 if (j % 5000 == 0 && VERBOSE)
-                    System.out.println("Trained " + j + " sentences of " + trainingFrames.size() + " | " +
-                            df.format(new Date()));
+                    System.out.println("Trained " + j + " sentences | " + df.format(new Date()));
             }
         }
     }
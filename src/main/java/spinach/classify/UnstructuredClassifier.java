@@ -4,8 +4,6 @@ import spinach.argumentclassifier.ArgumentClassifier;
 import spinach.predicateclassifier.PredicateClassifier;
 import spinach.sentence.SemanticFrameSet;
 
-import java.util.Collection;
-
 /**
  * A class that does the entire task for a sentence--
  * determines the predicates and the arguments of said sentence.
@@ -23,7 +21,7 @@ public class UnstructuredClassifier extends SemanticClassifier {
      * @param trainingFrames      collection of semantic framesets used to train
      */
     public UnstructuredClassifier(ArgumentClassifier argumentClassifier, PredicateClassifier predicateClassifier,
-                                  Collection<SemanticFrameSet> trainingFrames) {
+                                  Iterable<SemanticFrameSet> trainingFrames) {
         super(argumentClassifier, predicateClassifier, trainingFrames);
     }
 
@@ -36,4 +34,9 @@ public class UnstructuredClassifier extends SemanticClassifier {
     public void trainPredicateClassifier() {
         predicateClassifier.unstructuredTrain(trainingFrames);
     }
+
+    @Override
+    protected SemanticClassifier withArgumentClassifier(ArgumentClassifier argumentClassifier) {
+        return new UnstructuredClassifier(argumentClassifier, predicateClassifier, trainingFrames);
+    }
 }
@@ -0,0 +1,60 @@
+package spinach.predicateclassifier;
+
+import spinach.sentence.Token;
+import spinach.sentence.TokenSentenceAndPredicates;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides which tokens could possibly be predicates, so that a PredicateClassifier
+ * need not generate features for and classify the rest. A token is a candidate if its
+ * part of speech, and optionally its lemma, was seen on a predicate in training;
+ * punctuation, determiners and the like never are.
+ */
+public class PredicateCandidateFilter implements Serializable {
+
+    private static final long serialVersionUID = 2315617392470935170L;
+
+    private final Set<String> predicatePOS = new HashSet<String>();
+    private final Set<String> predicateLemmas;
+
+    /**
+     * Creates a filter from the predicates of a set of sentences.
+     *
+     * @param sentences sentences with gold predicates
+     * @param useLemmas whether or not tokens must also have the lemma of some predicate seen;
+     *                  this removes more tokens, but never lets a lemma not seen in training be a predicate
+     */
+    public PredicateCandidateFilter(Iterable<? extends TokenSentenceAndPredicates> sentences, boolean useLemmas) {
+        predicateLemmas = useLemmas ? new HashSet<String>() : null;
+
+        for (TokenSentenceAndPredicates sentence : sentences) {
+            for (Token predicate : sentence.getPredicateList()) {
+                predicatePOS.add(predicate.pos);
+                if (useLemmas)
+                    predicateLemmas.add(predicate.lemma);
+            }
+        }
+    }
+
+    /**
+     * Whether or not a token could be a predicate.
+     *
+     * @param t token to check
+     * @return true if the token's part of speech (and lemma, if lemmas are used) have been seen on a predicate
+     */
+    public boolean isCandidate(Token t) {
+        return predicatePOS.contains(t.pos) && (predicateLemmas == null || predicateLemmas.contains(t.lemma));
+    }
+
+    /**
+     * Returns the parts of speech that predicates have been seen with.
+     *
+     * @return set of parts of speech
+     */
+    public Set<String> getPredicatePOS() {
+        return predicatePOS;
+    }
+}
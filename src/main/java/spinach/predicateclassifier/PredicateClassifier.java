@@ -9,7 +9,6 @@ import spinach.sentence.TokenSentence;
 import spinach.sentence.TokenSentenceAndPredicates;
 
 import java.io.*;
-import java.util.Collection;
 import java.util.List;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -26,6 +25,8 @@ public class PredicateClassifier implements Serializable {
     private final PerceptronClassifier classifier;
     private final PredicateFeatureGenerator featureGenerator;
 
+    private PredicateCandidateFilter candidateFilter;
+
     private final static String PREDICATE_LABEL = "predicate";
     private final static String NOT_PREDICATE_LABEL = "not_predicate";
 
@@ -53,6 +54,29 @@ public class PredicateClassifier implements Serializable {
         return featureGenerator;
     }
 
+    /**
+     * Sets a filter of the tokens that could be predicates. Other tokens are never classified,
+     * and are always left out of the predicates. The filter is saved along with this classifier.
+     *
+     * @param candidateFilter filter to use, or null to classify every token
+     */
+    public void setCandidateFilter(PredicateCandidateFilter candidateFilter) {
+        this.candidateFilter = candidateFilter;
+    }
+
+    /**
+     * Returns the filter of the tokens that could be predicates.
+     *
+     * @return candidate filter, or null if every token is classified
+     */
+    public PredicateCandidateFilter getCandidateFilter() {
+        return candidateFilter;
+    }
+
+    private boolean isCandidate(Token t) {
+        return candidateFilter == null || candidateFilter.isCandidate(t);
+    }
+
     /**
      * Returns the set of possible labels for the perceptron.
      *
@@ -84,12 +108,17 @@ public class PredicateClassifier implements Serializable {
 
     private TokenSentenceAndPredicates sentenceWithPredicates(TokenSentence sentence, boolean training) {
         TokenSentenceAndPredicates sentenceAndPredicates = new TokenSentenceAndPredicates(sentence);
+        PredicateFeatureGenerator.SentenceFeatures sentenceFeatures =
+                featureGenerator.sentenceFeatures(sentenceAndPredicates);
         for (Token t : sentenceAndPredicates) {
+            if (!isCandidate(t))
+                continue;
+
             String predicateClass;
             if (training)
-                predicateClass = classifier.trainingClassOf(featureGenerator.datumFrom(sentenceAndPredicates, t));
+                predicateClass = classifier.trainingClassOf(featureGenerator.datumFrom(sentenceFeatures, t));
             else
-                predicateClass = classifier.classOf(featureGenerator.datumFrom(sentenceAndPredicates, t));
+                predicateClass = classifier.classOf(featureGenerator.datumFrom(sentenceFeatures, t));
             if (PREDICATE_LABEL.equals(predicateClass))
                 sentenceAndPredicates.addPredicate(t);
         }
@@ -105,14 +134,19 @@ public class PredicateClassifier implements Serializable {
      */
     public void update(TokenSentenceAndPredicates predictedSentence, TokenSentenceAndPredicates goldSentence) {
         Dataset<String, String> dataset = new Dataset<String, String>();
+        PredicateFeatureGenerator.SentenceFeatures sentenceFeatures =
+                featureGenerator.sentenceFeatures(predictedSentence);
 
         for (Token t : goldSentence) {
 
+            if (!isCandidate(t) && !goldSentence.isPredicate(t))
+                continue;
+
             String goldLabel = goldSentence.isPredicate(t) ? PREDICATE_LABEL : NOT_PREDICATE_LABEL;
             String predictedLabel = predictedSentence.isPredicate(t) ? PREDICATE_LABEL : NOT_PREDICATE_LABEL;
 
             BasicDatum<String, String> datum = (BasicDatum<String, String>)
-                    featureGenerator.datumFrom(predictedSentence, t);
+                    featureGenerator.datumFrom(sentenceFeatures, t);
 
             datum.setLabel(PerceptronClassifier.formatManualTrainingLabel(predictedLabel, goldLabel));
             dataset.add(datum);
@@ -137,10 +171,11 @@ public class PredicateClassifier implements Serializable {
      */
     private Dataset<String, String> datasetFrom(TokenSentenceAndPredicates frameSet) {
         Dataset<String, String> dataset = new Dataset<String, String>();
+        PredicateFeatureGenerator.SentenceFeatures sentenceFeatures = featureGenerator.sentenceFeatures(frameSet);
         for (Token predicate : frameSet.getPredicateList()) {
 
             BasicDatum<String, String> datum =
-                    (BasicDatum<String, String>) featureGenerator.datumFrom(frameSet, predicate);
+                    (BasicDatum<String, String>) featureGenerator.datumFrom(sentenceFeatures, predicate);
 
             datum.setLabel(frameSet.isPredicate(predicate) ? PREDICATE_LABEL :
                     NOT_PREDICATE_LABEL);
@@ -155,12 +190,14 @@ public class PredicateClassifier implements Serializable {
      *
      * @param frameSets Collection of framesets to generate a dataset
      */
-    public void unstructuredTrain(Collection<? extends TokenSentenceAndPredicates> frameSets) {
+    public void unstructuredTrain(Iterable<? extends TokenSentenceAndPredicates> frameSets) {
         Dataset<String, String> dataset = new Dataset<String, String>();
         for (TokenSentenceAndPredicates frameSet : frameSets)
             dataset.addAll(datasetFrom(frameSet));
 
-        dataset.applyFeatureCountThreshold(3);
+        //a reduced feature generator has already left out infrequent features
+        if (!featureGenerator.isFeatureSetReduced())
+            dataset.applyFeatureCountThreshold(3);
 
         classifier.train(dataset);
     }
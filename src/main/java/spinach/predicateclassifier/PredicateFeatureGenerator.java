@@ -3,8 +3,10 @@ package spinach.predicateclassifier;
 import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.process.WordShapeClassifier;
-import edu.stanford.nlp.stats.ClassicCounter;
-import edu.stanford.nlp.stats.Counter;
+import spinach.classifier.FeatureCounter;
+import spinach.classifier.FeatureSetReducer;
+import spinach.classifier.FeatureSink;
+import spinach.classifier.ReducibleFeatureGenerator;
 import spinach.sentence.SemanticFrameSet;
 import spinach.sentence.Token;
 import spinach.sentence.TokenSentence;
@@ -18,7 +20,7 @@ import java.util.*;
  *
  * @author Calvin Huang
  */
-public class PredicateFeatureGenerator implements Serializable {
+public class PredicateFeatureGenerator implements ReducibleFeatureGenerator, Serializable {
 
     private static final long serialVersionUID = -1845631435481366524L;
 
@@ -28,46 +30,109 @@ public class PredicateFeatureGenerator implements Serializable {
 
     private static final int FEATURE_COUNT_THRESHOLD = 3;
 
-    private transient Token prev2Token;
-    private transient Token prevToken;
-    private transient Token currToken;
-    private transient Token nextToken;
-    private transient Token next2Token;
-
     private Set<String> allowedNonStructuralFeatures;
 
     private static final String STRUCTURAL_FEATURE_PREFIX = "QQ";
 
-    private void centerToken(TokenSentence sentence, Token token) {
-        int sentenceIndex = token.sentenceIndex;
-
-        currToken = token;
-        if (sentenceIndex > 0)
-            prevToken = sentence.tokenAt(sentenceIndex - 1);
-        else
-            prevToken = Token.emptyToken;
-        if (sentenceIndex > 1)
-            prev2Token = sentence.tokenAt(sentenceIndex - 2);
-        else
-            prev2Token = Token.emptyToken;
-        if (sentenceIndex < sentence.size() - 1)
-            nextToken = sentence.tokenAt(sentenceIndex + 1);
-        else
-            nextToken = Token.emptyToken;
-        if (sentenceIndex < sentence.size() - 2)
-            next2Token = sentence.tokenAt(sentenceIndex + 2);
-        else
-            next2Token = Token.emptyToken;
+    /*
+    The tokens around the token that features are being generated for.
+    Windows are created for each call, so that the generator can be used by several threads at once.
+     */
+    private static final class Window {
+        final Token prev2Token;
+        final Token prevToken;
+        final Token currToken;
+        final Token nextToken;
+        final Token next2Token;
+
+        Window(TokenSentence sentence, Token token) {
+            int sentenceIndex = token.sentenceIndex;
+
+            currToken = token;
+            if (sentenceIndex > 0)
+                prevToken = sentence.tokenAt(sentenceIndex - 1);
+            else
+                prevToken = Token.emptyToken;
+            if (sentenceIndex > 1)
+                prev2Token = sentence.tokenAt(sentenceIndex - 2);
+            else
+                prev2Token = Token.emptyToken;
+            if (sentenceIndex < sentence.size() - 1)
+                nextToken = sentence.tokenAt(sentenceIndex + 1);
+            else
+                nextToken = Token.emptyToken;
+            if (sentenceIndex < sentence.size() - 2)
+                next2Token = sentence.tokenAt(sentenceIndex + 2);
+            else
+                next2Token = Token.emptyToken;
+        }
     }
 
-    private void clearFocus() {
-        prev2Token = null;
-        prevToken = null;
-        currToken = null;
-        nextToken = null;
-        next2Token = null;
+    /*
+    The parts of the features of each token of a sentence that only depend on the token's window:
+    its lemma, form, part of speech and word shape n-grams. They are computed at most once per sentence,
+    the first time they are needed, and then shared by the token and every token it is a child of.
+    Indexed by sentence index.
+     */
+    static final class SentenceFeatures {
+        final TokenSentenceAndPredicates sentence;
+
+        private final List<String>[] lemmaFeatures;
+        private final List<String>[] formFeatures;
+        private final List<String>[] posFeatures;
+        private final List<String>[] wordShapeFeatures;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SentenceFeatures(TokenSentenceAndPredicates sentence) {
+            this.sentence = sentence;
+
+            int length = 0;
+            for (Token t : sentence)
+                length = Math.max(length, t.sentenceIndex + 1);
+
+            lemmaFeatures = new List[length];
+            formFeatures = new List[length];
+            posFeatures = new List[length];
+            wordShapeFeatures = new List[length];
+        }
+
+        List<String> lemmaFeaturesOf(Token t) {
+            int i = t.sentenceIndex;
+            if (lemmaFeatures[i] == null)
+                lemmaFeatures[i] = lemmaFeatures(new Window(sentence, t));
+            return lemmaFeatures[i];
+        }
+
+        List<String> formFeaturesOf(Token t) {
+            int i = t.sentenceIndex;
+            if (formFeatures[i] == null)
+                formFeatures[i] = formFeatures(new Window(sentence, t));
+            return formFeatures[i];
+        }
+
+        List<String> posFeaturesOf(Token t) {
+            int i = t.sentenceIndex;
+            if (posFeatures[i] == null)
+                posFeatures[i] = posFeatures(new Window(sentence, t));
+            return posFeatures[i];
+        }
+
+        List<String> wordShapeFeaturesOf(Token t) {
+            int i = t.sentenceIndex;
+            if (wordShapeFeatures[i] == null)
+                wordShapeFeatures[i] = wordShapeFeatures(new Window(sentence, t), this);
+            return wordShapeFeatures[i];
+        }
+
+        String wordShapeOf(Token t) {
+            if (t == Token.emptyToken)
+                return EMPTY_WORD_SHAPE;
+            return sentence.wordShapeOf(t);
+        }
     }
 
+    private static final String EMPTY_WORD_SHAPE = WordShapeClassifier.wordShape(Token.emptyToken.form, WORD_SHAPER);
+
     /**
      * Generates a datum with features for some token and the surrounding sentence
      *
@@ -76,22 +141,45 @@ public class PredicateFeatureGenerator implements Serializable {
      * @return datum
      */
     public Datum<String, String> datumFrom(TokenSentenceAndPredicates sentence, Token predicate) {
-        return new BasicDatum<String, String>(reducedFeaturesOf(sentence, predicate));
+        return datumFrom(new SentenceFeatures(sentence), predicate);
+    }
+
+    /**
+     * Generates a datum with features for some token, reusing the features already computed
+     * for the rest of its sentence. When generating features for many tokens of one sentence,
+     * this saves recomputing the features of each token's neighbors and children.
+     *
+     * @param sentenceFeatures features of the sentence the predicate is in
+     * @param predicate        predicate to generate the features around
+     * @return datum
+     */
+    Datum<String, String> datumFrom(SentenceFeatures sentenceFeatures, Token predicate) {
+        return new BasicDatum<String, String>(reducedFeaturesOf(sentenceFeatures, predicate));
+    }
+
+    /**
+     * Starts generating features for the tokens of some sentence.
+     *
+     * @param sentence sentence to generate features for
+     * @return holder of the features of the sentence's tokens, to pass to {@link #datumFrom(SentenceFeatures, Token)}
+     */
+    SentenceFeatures sentenceFeatures(TokenSentenceAndPredicates sentence) {
+        return new SentenceFeatures(sentence);
     }
 
     /**
      * Generates features for some sentence and some predicate
      *
-     * @param sentence  sentence containing predicate
-     * @param predicate predicate candidates to generate feature for
+     * @param sentenceFeatures features of the sentence containing predicate
+     * @param predicate        predicate candidates to generate feature for
      * @return datum (without label) for this sentence, predicate
      */
-    Collection<String> reducedFeaturesOf(TokenSentenceAndPredicates sentence, Token predicate) {
+    Collection<String> reducedFeaturesOf(SentenceFeatures sentenceFeatures, Token predicate) {
         if (allowedNonStructuralFeatures == null)
-            return featuresOf(sentence, predicate);
+            return featuresOf(sentenceFeatures, predicate);
 
         Collection<String> features = new ArrayList<String>();
-        for (String s : featuresOf(sentence, predicate))
+        for (String s : featuresOf(sentenceFeatures, predicate))
             if (isStructuralFeature(s) || allowedNonStructuralFeatures.contains(s))
                 features.add(s);
 
@@ -103,18 +191,21 @@ public class PredicateFeatureGenerator implements Serializable {
     }
 
     protected Collection<String> featuresOf(TokenSentenceAndPredicates sentence, Token predicate) {
+        return featuresOf(new SentenceFeatures(sentence), predicate);
+    }
 
-        Collection<String> features = new ArrayList<String>();
+    private Collection<String> featuresOf(SentenceFeatures sentenceFeatures, Token predicate) {
 
-        centerToken(sentence, predicate);
+        TokenSentenceAndPredicates sentence = sentenceFeatures.sentence;
+        Collection<String> features = new ArrayList<String>();
 
-        List<String> predicateLemmaFeatures = lemmaFeatures();
-        List<String> predicatePOSFeatures = posFeatures();
+        List<String> predicateLemmaFeatures = sentenceFeatures.lemmaFeaturesOf(predicate);
+        List<String> predicatePOSFeatures = sentenceFeatures.posFeaturesOf(predicate);
 
         features.addAll(predicateLemmaFeatures);
-        features.addAll(formFeatures());
+        features.addAll(sentenceFeatures.formFeaturesOf(predicate));
         features.addAll(predicatePOSFeatures);
-        features.addAll(wordShapeFeatures());
+        features.addAll(sentenceFeatures.wordShapeFeaturesOf(predicate));
 
         List<Token> children = sentence.getChildren(predicate);
 
@@ -125,10 +216,8 @@ public class PredicateFeatureGenerator implements Serializable {
         for (Token child : children) {
             int relativePosition = predicate.sentenceIndex - child.sentenceIndex;
 
-            centerToken(sentence, child);
-
-            List<String> childLemmaFeatures = lemmaFeatures();
-            List<String> childPOSFeatures = posFeatures();
+            List<String> childLemmaFeatures = sentenceFeatures.lemmaFeaturesOf(child);
+            List<String> childPOSFeatures = sentenceFeatures.posFeaturesOf(child);
 
             //child lemma features
             for (String s : childLemmaFeatures) {
@@ -191,70 +280,68 @@ public class PredicateFeatureGenerator implements Serializable {
 
         }
 
-        clearFocus();
-
         return features;
     }
 
-    private List<String> lemmaFeatures() {
+    private static List<String> lemmaFeatures(Window w) {
         List<String> features = new ArrayList<String>();
 
         //lemma unigrams
-        features.add("l-1|" + prevToken.lemma);
-        features.add("l0|" + currToken.lemma);
-        features.add("l1|" + nextToken.lemma);
+        features.add("l-1|" + w.prevToken.lemma);
+        features.add("l0|" + w.currToken.lemma);
+        features.add("l1|" + w.nextToken.lemma);
 
         //lemma bigrams
         features.add("l-10|" +        //<i-1, i>
-                prevToken.lemma + ' ' + currToken.lemma);
+                w.prevToken.lemma + ' ' + w.currToken.lemma);
         features.add("l01|" +        //<i, i+1>
-                currToken.lemma + ' ' + nextToken.lemma);
+                w.currToken.lemma + ' ' + w.nextToken.lemma);
 
         return features;
     }
 
-    private List<String> formFeatures() {
+    private static List<String> formFeatures(Window w) {
         List<String> features = new ArrayList<String>();
 
         //form unigrams
-        features.add("f-2|" + prev2Token.form);
-        features.add("f-1|" + prevToken.form);
-        features.add("f0|" + currToken.form);
-        features.add("f1|" + nextToken.form);
-        features.add("f2|" + next2Token.form);
+        features.add("f-2|" + w.prev2Token.form);
+        features.add("f-1|" + w.prevToken.form);
+        features.add("f0|" + w.currToken.form);
+        features.add("f1|" + w.nextToken.form);
+        features.add("f2|" + w.next2Token.form);
 
         return features;
     }
 
-    private List<String> posFeatures() {
+    private static List<String> posFeatures(Window w) {
         List<String> features = new ArrayList<String>();
 
         //pos unigrams
-        features.add("p-1|" + prevToken.pos);
-        features.add("p0|" + currToken.pos);
-        features.add("p1|" + nextToken.pos);
+        features.add("p-1|" + w.prevToken.pos);
+        features.add("p0|" + w.currToken.pos);
+        features.add("p1|" + w.nextToken.pos);
 
         //pos bigrams
         features.add("p-21|" +    //<i-2, i-1>
-                prev2Token.pos + ' ' + prevToken.pos);
+                w.prev2Token.pos + ' ' + w.prevToken.pos);
         features.add("p-10|" +        //<i-1, i>
-                prevToken.pos + ' ' + currToken.pos);
+                w.prevToken.pos + ' ' + w.currToken.pos);
         features.add("p01|" +        //<i, i+1>
-                currToken.pos + ' ' + nextToken.pos);
+                w.currToken.pos + ' ' + w.nextToken.pos);
         features.add("p12|" +    //<i, i+1>
-                nextToken.pos + ' ' + next2Token.pos);
+                w.nextToken.pos + ' ' + w.next2Token.pos);
 
         return features;
     }
 
-    private List<String> wordShapeFeatures() {
+    private static List<String> wordShapeFeatures(Window w, SentenceFeatures sentenceFeatures) {
         List<String> features = new ArrayList<String>();
 
-        String wordShape = wordShapeOf(currToken);
-        String prevWordShape = wordShapeOf(prevToken);
-        String prev2WordShape = wordShapeOf(prev2Token);
-        String nextWordShape = wordShapeOf(nextToken);
-        String next2WordShape = wordShapeOf(next2Token);
+        String wordShape = sentenceFeatures.wordShapeOf(w.currToken);
+        String prevWordShape = sentenceFeatures.wordShapeOf(w.prevToken);
+        String prev2WordShape = sentenceFeatures.wordShapeOf(w.prev2Token);
+        String nextWordShape = sentenceFeatures.wordShapeOf(w.nextToken);
+        String next2WordShape = sentenceFeatures.wordShapeOf(w.next2Token);
 
         //word shape unigrams
         features.add("w-1|" + prevWordShape);
@@ -280,10 +367,6 @@ public class PredicateFeatureGenerator implements Serializable {
         return features;
     }
 
-    private String wordShapeOf(Token t) {
-        return WordShapeClassifier.wordShape(t.form, WORD_SHAPER);
-    }
-
     /**
      * To save memory and time, the feature generator should ignore features that
      * don't appear often in training. (This ignores so-called "structural features",
@@ -291,25 +374,74 @@ public class PredicateFeatureGenerator implements Serializable {
      * <p/>
      * This generates an internal list of features that are not ignored, based on the set of training frames--
      * the set of training frames should be the same set used to train the predicate classifier.
+     * <p/>
+     * Features are counted in bounded memory, in parallel, by a {@link FeatureSetReducer};
+     * to reduce the argument feature generator in the same passes, use one directly.
      *
      * @param trainingSet training set used to train
      */
-    public void reduceFeatureSet(Collection<SemanticFrameSet> trainingSet) {
-        Counter<String> featureCounter = new ClassicCounter<String>();
+    public void reduceFeatureSet(Iterable<SemanticFrameSet> trainingSet) {
+        new FeatureSetReducer(null, this, FEATURE_COUNT_THRESHOLD).reduce(trainingSet);
+        System.out.println("predclass final feature set size: " + allowedNonStructuralFeatures.size());
+    }
 
-        for (SemanticFrameSet frameSet : trainingSet)
-            for (Token t : frameSet)
-                for (String s : featuresOf(frameSet, t))
-                    featureCounter.incrementCount(s);
+    /**
+     * Sets the allowed non-structural features, as found by reduceFeatureSet() or a {@link FeatureSetReducer}.
+     *
+     * @param allowedFeatures set of allowed features
+     */
+    @Override
+    public void setAllowedNonStructuralFeatures(Set<String> allowedFeatures) {
+        allowedNonStructuralFeatures = new HashSet<String>(allowedFeatures);
+    }
 
-        System.out.println("predclass initial feature set size: " + featureCounter.size());
+    /**
+     * Whether or not the allowed non-structural features have been found from a training set.
+     * If so, the features generated already leave out infrequent features, so there is no
+     * need to apply a feature count threshold to the data generated again.
+     *
+     * @return true if there is a set of allowed features
+     */
+    public boolean isFeatureSetReduced() {
+        return allowedNonStructuralFeatures != null;
+    }
 
-        allowedNonStructuralFeatures = new HashSet<String>();
-        for (String s : featureCounter.keySet())
-            if (featureCounter.getCount(s) >= FEATURE_COUNT_THRESHOLD)
-                allowedNonStructuralFeatures.add(s);
+    /**
+     * Generates the features of every token of a sentence,
+     * without leaving out the features that are not allowed.
+     *
+     * @param sentence sentence to generate features for
+     * @param counter  counter to add the features of each token to
+     */
+    @Override
+    public void countFeatures(SemanticFrameSet sentence, FeatureCounter counter) {
+        SentenceFeatures sentenceFeatures = new SentenceFeatures(sentence);
+        for (Token t : sentence) {
+            FeatureSink sink = counter.nextInput();
+            for (String s : featuresOf(sentenceFeatures, t))
+                sink.add(s);
+        }
+    }
 
-        System.out.println("predclass final feature set size: " + allowedNonStructuralFeatures.size());
+    /**
+     * Every feature is counted, structural or not.
+     *
+     * @param key key of the feature
+     * @return true
+     */
+    @Override
+    public boolean isCounted(long key) {
+        return true;
+    }
+
+    /**
+     * Each feature is counted every time it is generated.
+     *
+     * @return false
+     */
+    @Override
+    public boolean countsOncePerInput() {
+        return false;
     }
 
     /**
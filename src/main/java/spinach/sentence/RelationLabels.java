@@ -0,0 +1,85 @@
+package spinach.sentence;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Global table of semantic relation labels (A0, A1, AM-TMP, ...).
+ * Each label is assigned a small integer id the first time it is seen,
+ * so that SemanticFrameSets can store relations as compact arrays of ids
+ * instead of maps of strings.
+ * <p/>
+ * Ids are only meaningful within a single run of the program, and
+ * should never be serialized.
+ */
+public final class RelationLabels {
+
+    /**
+     * Id signifying the absence of a relation.
+     */
+    public static final int NONE = 0;
+
+    /*
+    Ids are stored in shorts by SemanticFrameSet.
+     */
+    private static final int MAX_ID = Short.MAX_VALUE;
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+    private static volatile String[] labels = new String[16];
+    private static int nextId = NONE + 1;
+
+    private RelationLabels() {
+    }
+
+    /**
+     * Returns the id of some label, assigning it a new id if it has not been seen before.
+     *
+     * @param label relation label
+     * @return id of that label (never {@link #NONE})
+     */
+    public static int idOf(String label) {
+        Integer id = ids.get(label);
+        if (id != null)
+            return id;
+
+        synchronized (RelationLabels.class) {
+            id = ids.get(label);
+            if (id != null)
+                return id;
+
+            if (nextId > MAX_ID)
+                throw new IllegalStateException("Too many distinct relation labels");
+
+            String[] newLabels = labels;
+            if (nextId >= newLabels.length)
+                newLabels = Arrays.copyOf(newLabels, newLabels.length * 2);
+            newLabels[nextId] = label;
+            labels = newLabels;
+
+            ids.put(label, nextId);
+            return nextId++;
+        }
+    }
+
+    /**
+     * Returns the id of some label, without assigning a new one.
+     *
+     * @param label relation label
+     * @return id of that label, or {@link #NONE} if it has never been seen
+     */
+    public static int lookup(String label) {
+        Integer id = ids.get(label);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * Returns the label that some id refers to.
+     *
+     * @param id label id, as returned by {@link #idOf(String)}
+     * @return label with that id, or null for {@link #NONE}
+     */
+    public static String labelOf(int id) {
+        return labels[id];
+    }
+}
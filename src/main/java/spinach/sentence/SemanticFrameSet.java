@@ -1,9 +1,6 @@
 package spinach.sentence;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.ListIterator;
-import java.util.Map;
+import java.util.*;
 
 /**
  * A SemanticFrameSet represents relationships between tokens
@@ -16,7 +13,23 @@ import java.util.Map;
  */
 public class SemanticFrameSet extends TokenSentenceAndPredicates {
 
-    private final Map<Token, Map<Token, String>> relations = new HashMap<Token, Map<Token, String>>();
+    /*
+    Relations are indexed by sentence index: relations[p][a] is the id (see RelationLabels)
+    of the relation between the predicate at index p and the argument at index a,
+    or RelationLabels.NONE if there is none.
+    Rows are shared between a frameset and its copies, and are cloned the first time
+    they are written to; ownedRows keeps track of which rows this frameset may write to.
+     */
+    private short[][] relations = new short[0][];
+    private int[] argumentCounts = new int[0];
+    private boolean[] ownedRows = new boolean[0];
+
+    private ArgumentMap[] argumentViews = new ArgumentMap[0];
+
+    /*
+    Predicates (by sentence index) whose arguments were classified with a cheaper fallback strategy.
+     */
+    private boolean[] degraded;
 
     /**
      * Creates an empty SemanticFrameSet.
@@ -34,6 +47,30 @@ public class SemanticFrameSet extends TokenSentenceAndPredicates {
         predicateList = sentenceAndPredicates.predicateList;
     }
 
+    /**
+     * Creates a copy of this SemanticFrameSet, with the same tokens, predicates and relations.
+     * Relations added to the copy do not affect this frameset, and vice versa.
+     * Copying is cheap; the relations of each predicate are only duplicated once
+     * either frameset modifies them.
+     *
+     * @return copy of this frameset
+     */
+    public SemanticFrameSet copy() {
+        SemanticFrameSet copy = new SemanticFrameSet();
+        copy.shareTokens(this);
+        copy.predicateList = new ArrayList<Token>(predicateList);
+
+        copy.relations = relations.clone();
+        copy.argumentCounts = argumentCounts.clone();
+        copy.ownedRows = new boolean[relations.length];
+        copy.argumentViews = new ArgumentMap[relations.length];
+        Arrays.fill(ownedRows, false);
+        if (degraded != null)
+            copy.degraded = degraded.clone();
+
+        return copy;
+    }
+
     /**
      * Adds a relation between an argument and a predicate.
      *
@@ -42,28 +79,136 @@ public class SemanticFrameSet extends TokenSentenceAndPredicates {
      * @param relation  semantic relationship between the two
      */
     public void addArgument(Token predicate, Token argument, String relation) {
-        //relations.put(predicate, new Pair<Token, String>(argument, relation));
-        Map<Token, String> predicateMap = relations.get(predicate);
-        if (predicateMap == null) {
-            predicateMap = new HashMap<Token, String>();
-            predicateMap.put(argument, relation);
-            relations.put(predicate, predicateMap);
-        } else
-            predicateMap.put(argument, relation);
+        short[] row = writableRow(predicate.sentenceIndex, argument.sentenceIndex);
+
+        if (row[argument.sentenceIndex] == RelationLabels.NONE)
+            argumentCounts[predicate.sentenceIndex]++;
+        row[argument.sentenceIndex] = (short) RelationLabels.idOf(relation);
+    }
+
+    private short[] writableRow(int predicateIndex, int argumentIndex) {
+        if (predicateIndex >= relations.length) {
+            int newLength = Math.max(predicateIndex + 1, sentenceTokens.length);
+            relations = Arrays.copyOf(relations, newLength);
+            argumentCounts = Arrays.copyOf(argumentCounts, newLength);
+            ownedRows = Arrays.copyOf(ownedRows, newLength);
+            argumentViews = Arrays.copyOf(argumentViews, newLength);
+        }
 
+        short[] row = relations[predicateIndex];
+        int minLength = Math.max(argumentIndex + 1, sentenceTokens.length);
+        if (row == null)
+            row = new short[minLength];
+        else if (!ownedRows[predicateIndex] || row.length < minLength)
+            row = Arrays.copyOf(row, Math.max(row.length, minLength));
+        else
+            return row;
+
+        relations[predicateIndex] = row;
+        ownedRows[predicateIndex] = true;
+        return row;
     }
 
     /**
-     * View the relations and arguments of some predicate
+     * View the relations and arguments of some predicate. The view is read-only, even when
+     * the predicate has no arguments; use addArgument() to add arguments.
      *
      * @param predicate predicate to look at the arguments of
-     * @return arguments of this predicate, and their relations
+     * @return read-only arguments of this predicate, and their relations
      */
     public Map<Token, String> argumentsOf(Token predicate) {
-        Map<Token, String> m = relations.get(predicate);
-        if (m == null)
-            return new HashMap<Token, String>();
-        return Collections.unmodifiableMap(m);
+        int p = predicate.sentenceIndex;
+        if (numArgumentsOf(predicate) == 0)
+            return Collections.emptyMap();
+
+        ArgumentMap view = argumentViews[p];
+        if (view == null) {
+            view = new ArgumentMap(p);
+            argumentViews[p] = view;
+        }
+        return view;
+    }
+
+    /**
+     * Returns the number of arguments of some predicate.
+     *
+     * @param predicate predicate to look at the arguments of
+     * @return number of arguments of that predicate
+     */
+    public int numArgumentsOf(Token predicate) {
+        int p = predicate.sentenceIndex;
+        if (p < 0 || p >= relations.length || !hasToken(predicate))
+            return 0;
+        return argumentCounts[p];
+    }
+
+    /**
+     * Returns the id of the relation between a predicate and an argument.
+     *
+     * @param predicate predicate in this sentence
+     * @param argument  possible argument of that predicate
+     * @return relation id (see {@link RelationLabels}), or RelationLabels.NONE if there is no relation
+     */
+    public int relationIdOf(Token predicate, Token argument) {
+        if (!hasToken(predicate) || !hasToken(argument))
+            return RelationLabels.NONE;
+        return relationIdAt(predicate.sentenceIndex, argument.sentenceIndex);
+    }
+
+    /**
+     * Returns the id of the relation between the tokens at two indices in this sentence.
+     *
+     * @param predicateIndex sentence index of the predicate
+     * @param argumentIndex  sentence index of the argument
+     * @return relation id (see {@link RelationLabels}), or RelationLabels.NONE if there is no relation
+     */
+    public int relationIdAt(int predicateIndex, int argumentIndex) {
+        if (predicateIndex < 0 || predicateIndex >= relations.length)
+            return RelationLabels.NONE;
+        short[] row = relations[predicateIndex];
+        if (row == null || argumentIndex < 0 || argumentIndex >= row.length)
+            return RelationLabels.NONE;
+        return row[argumentIndex];
+    }
+
+    /**
+     * Marks a predicate as degraded: its arguments were classified with a cheaper fallback
+     * strategy (for instance because the sentence ran out of time), and may be less accurate.
+     *
+     * @param predicate predicate in this sentence
+     */
+    public void markDegraded(Token predicate) {
+        if (degraded == null)
+            degraded = new boolean[Math.max(predicate.sentenceIndex + 1, sentenceTokens.length)];
+        else if (predicate.sentenceIndex >= degraded.length)
+            degraded = Arrays.copyOf(degraded, predicate.sentenceIndex + 1);
+        degraded[predicate.sentenceIndex] = true;
+    }
+
+    /**
+     * Whether or not the arguments of some predicate were classified with a cheaper fallback strategy.
+     *
+     * @param predicate predicate in this sentence
+     * @return true if the predicate has been marked as degraded
+     */
+    public boolean isDegraded(Token predicate) {
+        int p = predicate.sentenceIndex;
+        return degraded != null && p >= 0 && p < degraded.length && degraded[p] && hasToken(predicate);
+    }
+
+    /**
+     * Returns the number of predicates of this sentence that are marked as degraded.
+     *
+     * @return number of degraded predicates
+     */
+    public int numDegradedPredicates() {
+        if (degraded == null)
+            return 0;
+        int count = 0;
+        for (Token predicate : predicateList)
+            if (isDegraded(predicate))
+                count++;
+        return count;
     }
 
     /**
@@ -72,10 +217,91 @@ public class SemanticFrameSet extends TokenSentenceAndPredicates {
     public void trimPredicates() {
         for (ListIterator<Token> iterator = predicateList.listIterator(predicateList.size());
              iterator.hasPrevious(); ) {
-            Map<Token, String> arguments = argumentsOf(iterator.previous());
-            if (arguments == null || arguments.isEmpty())
+            if (numArgumentsOf(iterator.previous()) == 0)
                 iterator.remove();
         }
     }
 
+    /**
+     * Unmodifiable map view over the relations of a single predicate.
+     */
+    private final class ArgumentMap extends AbstractMap<Token, String> {
+
+        private final int predicateIndex;
+        private final Set<Map.Entry<Token, String>> entries = new AbstractSet<Map.Entry<Token, String>>() {
+            @Override
+            public Iterator<Map.Entry<Token, String>> iterator() {
+                return new EntryIterator(relations[predicateIndex]);
+            }
+
+            @Override
+            public int size() {
+                return argumentCounts[predicateIndex];
+            }
+        };
+
+        ArgumentMap(int predicateIndex) {
+            this.predicateIndex = predicateIndex;
+        }
+
+        @Override
+        public String get(Object key) {
+            if (!(key instanceof Token) || !hasToken((Token) key))
+                return null;
+            return RelationLabels.labelOf(relationIdAt(predicateIndex, ((Token) key).sentenceIndex));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return argumentCounts[predicateIndex];
+        }
+
+        @Override
+        public Set<Map.Entry<Token, String>> entrySet() {
+            return entries;
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<Token, String>> {
+
+        private final short[] row;
+        private int nextIndex = -1;
+
+        EntryIterator(short[] row) {
+            this.row = row == null ? new short[0] : row;
+            advance();
+        }
+
+        private void advance() {
+            for (nextIndex++; nextIndex < row.length; nextIndex++)
+                if (row[nextIndex] != RelationLabels.NONE)
+                    return;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextIndex < row.length;
+        }
+
+        @Override
+        public Map.Entry<Token, String> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Map.Entry<Token, String> entry = new AbstractMap.SimpleImmutableEntry<Token, String>(
+                    tokenAt(nextIndex), RelationLabels.labelOf(row[nextIndex]));
+            advance();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 }
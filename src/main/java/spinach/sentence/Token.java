@@ -28,6 +28,9 @@ public class Token {
     public final int headSentenceIndex;
     public final int sentenceIndex;
 
+    private final boolean verb;
+    private final boolean noun;
+
     /**
      * Generates token for some word
      *
@@ -48,6 +51,9 @@ public class Token {
         this.syntacticHeadRelation = syntacticHeadRelation;
         this.headSentenceIndex = headSentenceIndex;
         this.sentenceIndex = sentenceIndex;
+
+        verb = pos.startsWith("V");
+        noun = pos.startsWith("N");
     }
 
     public boolean equals(Object o) {
@@ -95,7 +101,7 @@ public class Token {
      * @return whether or not the part of speech tag begins with a V
      */
     public boolean isVerb() {
-        return pos.startsWith("V");
+        return verb;
     }
 
     /**
@@ -104,6 +110,6 @@ public class Token {
      * @return whether or not the part of speech tag begins with a N
      */
     public boolean isNoun() {
-        return pos.startsWith("N");
+        return noun;
     }
 }
@@ -3,6 +3,7 @@ package spinach.sentence;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
+import edu.stanford.nlp.process.WordShapeClassifier;
 
 import java.util.*;
 
@@ -23,6 +24,28 @@ public class TokenSentence implements Iterable<Token> {
     ListMultimap<Integer, Token> children = ArrayListMultimap.create();
     int size = 0;
 
+    private volatile AttributeCache attributes;
+
+    /*
+    Attributes derived from the tokens of a sentence, computed the first time each is asked for.
+    Entries are filled in without locking; since the values are immutable strings, the worst
+    that can happen when threads race is that a value is computed more than once.
+    Indexed by sentence index.
+     */
+    private static final class AttributeCache {
+        final String[] lowercaseForms;
+        final String[] wordShapes;
+        final String[] voices;
+
+        AttributeCache(int length) {
+            lowercaseForms = new String[length];
+            wordShapes = new String[length];
+            voices = new String[length];
+        }
+    }
+
+    private static final int WORD_SHAPER = WordShapeClassifier.WORDSHAPECHRIS2;
+
     /**
      * Find the token at some index in this sentence.
      *
@@ -42,6 +65,7 @@ public class TokenSentence implements Iterable<Token> {
      * @param token token to be added
      */
     public void addToken(Token token) {
+        attributes = null;
         ensureCapacity(token.sentenceIndex + 1);
         sentenceTokens[token.sentenceIndex] = token;
 
@@ -53,6 +77,98 @@ public class TokenSentence implements Iterable<Token> {
             root = token;
     }
 
+    /**
+     * Whether or not some token is a token of this sentence.
+     *
+     * @param t token to look for
+     * @return true if the token at t's index in this sentence is t
+     */
+    boolean hasToken(Token t) {
+        int index = t.sentenceIndex;
+        if (index < 0 || index >= sentenceTokens.length)
+            return false;
+        Token token = sentenceTokens[index];
+        return token == t || t.equals(token);
+    }
+
+    /**
+     * Makes this sentence share the tokens and syntactic structure of another sentence.
+     *
+     * @param other sentence to share tokens with
+     */
+    void shareTokens(TokenSentence other) {
+        sentenceTokens = other.sentenceTokens;
+        children = other.children;
+        root = other.root;
+        size = other.size;
+        attributes = other.attributes();
+    }
+
+    /**
+     * Makes this sentence share the cached token attributes of another sentence with the same tokens.
+     *
+     * @param other sentence to share attributes with
+     */
+    void shareAttributes(TokenSentence other) {
+        attributes = other.attributes();
+    }
+
+    private AttributeCache attributes() {
+        AttributeCache cache = attributes;
+        if (cache == null) {
+            cache = new AttributeCache(sentenceTokens.length);
+            attributes = cache;
+        }
+        return cache;
+    }
+
+    /*
+    Only tokens of this sentence have their attributes cached; a token of another sentence
+    may have the same index as one of this sentence's.
+     */
+    private boolean isCached(Token t, String[] values) {
+        return t.sentenceIndex < values.length && hasToken(t);
+    }
+
+    /**
+     * Returns the form of some token in lower case.
+     *
+     * @param t token in this sentence
+     * @return lower case form
+     */
+    public String lowercaseFormOf(Token t) {
+        String[] values = attributes().lowercaseForms;
+        if (!isCached(t, values))
+            return t.form.toLowerCase();
+
+        String value = values[t.sentenceIndex];
+        if (value == null) {
+            value = t.form.toLowerCase();
+            values[t.sentenceIndex] = value;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the word shape of some token's form (as given by
+     * {@link WordShapeClassifier#WORDSHAPECHRIS2}), e.g. "Xxxx" for a capitalized word.
+     *
+     * @param t token in this sentence
+     * @return word shape
+     */
+    public String wordShapeOf(Token t) {
+        String[] values = attributes().wordShapes;
+        if (!isCached(t, values))
+            return WordShapeClassifier.wordShape(t.form, WORD_SHAPER);
+
+        String value = values[t.sentenceIndex];
+        if (value == null) {
+            value = WordShapeClassifier.wordShape(t.form, WORD_SHAPER);
+            values[t.sentenceIndex] = value;
+        }
+        return value;
+    }
+
     /**
      * Returns the sentence root.
      *
@@ -294,6 +410,19 @@ public class TokenSentence implements Iterable<Token> {
      * @return the voice of the word
      */
     public String voiceOf(Token t) {
+        String[] values = attributes().voices;
+        if (!isCached(t, values))
+            return computeVoiceOf(t);
+
+        String value = values[t.sentenceIndex];
+        if (value == null) {
+            value = computeVoiceOf(t);
+            values[t.sentenceIndex] = value;
+        }
+        return value;
+    }
+
+    private String computeVoiceOf(Token t) {
         if (!t.pos.startsWith("VB"))
             return "notVerb";
 
@@ -337,12 +466,12 @@ public class TokenSentence implements Iterable<Token> {
             "be", "am", "is", "was", "are", "were", "been", "being"
     );
 
-    private static boolean isBeVerb(Token t) {
-        return beVerbForms.contains(t.form.toLowerCase());
+    private boolean isBeVerb(Token t) {
+        return beVerbForms.contains(lowercaseFormOf(t));
     }
 
-    private static boolean isGetVerb(Token t) {
-        return getVerbForms.contains(t.form.toLowerCase());
+    private boolean isGetVerb(Token t) {
+        return getVerbForms.contains(lowercaseFormOf(t));
     }
 
     private void ensureCapacity(int capacity) {
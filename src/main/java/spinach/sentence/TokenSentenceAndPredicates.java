@@ -30,6 +30,7 @@ public class TokenSentenceAndPredicates extends TokenSentence {
     public TokenSentenceAndPredicates(TokenSentence sentence) {
         sentenceTokens = sentence.sentenceTokens;
         children = sentence.children;
+        shareAttributes(sentence);
     }
 
     /**
@@ -0,0 +1,100 @@
+package test;
+
+import edu.stanford.nlp.ling.Datum;
+import spinach.CorpusUtils;
+import spinach.argumentclassifier.ArgumentClassifier;
+import spinach.argumentclassifier.LeftRightArgumentClassifier;
+import spinach.argumentclassifier.featuregen.ArgumentFeatureGenerator;
+import spinach.classifier.PerceptronClassifier;
+import spinach.classify.Metric;
+import spinach.classify.StructuredClassifier;
+import spinach.predicateclassifier.PredicateClassifier;
+import spinach.predicateclassifier.PredicateFeatureGenerator;
+import spinach.sentence.SemanticFrameSet;
+import spinach.sentence.Token;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static test.TestConstants.*;
+
+/**
+ * Compares bounded scoring against full scoring: every argument candidate of the devel
+ * corpus must get the same label either way, and the devel scores must not change.
+ */
+public class BoundedScoringTest {
+
+    public static final int BURN_IN_PERIOD = 800000;
+
+    public static void main(String[] args) throws IOException {
+
+        List<SemanticFrameSet> trainingFrames = CorpusUtils.parseCorpus(TRAIN_CORPUS);
+        System.out.println("Parsed train corpus");
+
+        ArgumentFeatureGenerator argumentFeatureGenerator = new ArgumentFeatureGenerator();
+        argumentFeatureGenerator.reduceFeatureSet(trainingFrames);
+        argumentFeatureGenerator.setAllowStructuralFeatures(true);
+        PerceptronClassifier argumentClassifierPerceptron =
+                new PerceptronClassifier(argumentFeatureGenerator.getAllowedNonStructuralFeatures(),
+                        ArgumentClassifier.getLabelSet(trainingFrames), NUM_EPOCHS);
+        argumentClassifierPerceptron.setBurnInPeriod(BURN_IN_PERIOD);
+        ArgumentClassifier argumentClassifier =
+                new LeftRightArgumentClassifier(argumentClassifierPerceptron, argumentFeatureGenerator);
+
+        PredicateFeatureGenerator predicateFeatureGenerator = new PredicateFeatureGenerator();
+        predicateFeatureGenerator.reduceFeatureSet(trainingFrames);
+        PerceptronClassifier predicateClassifierPerceptron =
+                new PerceptronClassifier(predicateFeatureGenerator.getAllowedNonStructuralFeatures(),
+                        PredicateClassifier.getLabelSet(), NUM_EPOCHS);
+        PredicateClassifier predicateClassifier =
+                new PredicateClassifier(predicateClassifierPerceptron, predicateFeatureGenerator);
+
+        StructuredClassifier classifier = new StructuredClassifier(argumentClassifier, predicateClassifier,
+                NUM_EPOCHS, trainingFrames);
+        classifier.trainPredicateClassifier();
+        classifier.trainArgumentClassifier();
+
+        List<SemanticFrameSet> testFrameSets = CorpusUtils.parseCorpus(DEVEL_CORPUS);
+        System.out.println("parsed devel corpus");
+
+        List<Datum<String, String>> data = new ArrayList<Datum<String, String>>();
+        for (SemanticFrameSet frameSet : testFrameSets)
+            for (Token predicate : frameSet.getPredicateList())
+                for (Token argument : ArgumentClassifier.argumentCandidates(frameSet, predicate))
+                    data.add(argumentFeatureGenerator.datumFrom(frameSet, argument, predicate));
+
+        Collection<String> labels = argumentClassifierPerceptron.indexedLabels();
+
+        argumentClassifierPerceptron.setBoundedScoring(false);
+        List<String> fullLabels = new ArrayList<String>();
+        long startTime = System.nanoTime();
+        for (Datum<String, String> d : data)
+            fullLabels.add(argumentClassifierPerceptron.argMax(d, labels, false));
+        long fullTime = System.nanoTime() - startTime;
+        Metric fullMetric = new Metric(classifier, testFrameSets);
+
+        argumentClassifierPerceptron.setBoundedScoring(true);
+        List<String> boundedLabels = new ArrayList<String>();
+        startTime = System.nanoTime();
+        for (Datum<String, String> d : data)
+            boundedLabels.add(argumentClassifierPerceptron.argMax(d, labels, false));
+        long boundedTime = System.nanoTime() - startTime;
+        Metric boundedMetric = new Metric(classifier, testFrameSets);
+
+        int mismatches = 0;
+        for (int i = 0; i < data.size(); i++)
+            if (!fullLabels.get(i).equals(boundedLabels.get(i)))
+                mismatches++;
+
+        System.out.format("%d candidates, %d mismatches\n", data.size(), mismatches);
+        System.out.format("Full scoring %.3fs, bounded scoring %.3fs\n", fullTime / 1e9, boundedTime / 1e9);
+
+        String s = Metric.TOTAL;
+        System.out.format("Full %s %.4f %.4f %.4f\n", s, fullMetric.argumentPrecisions().getCount(s),
+                fullMetric.argumentRecalls().getCount(s), fullMetric.argumentF1s().getCount(s));
+        System.out.format("Bounded %s %.4f %.4f %.4f\n", s, boundedMetric.argumentPrecisions().getCount(s),
+                boundedMetric.argumentRecalls().getCount(s), boundedMetric.argumentF1s().getCount(s));
+    }
+}